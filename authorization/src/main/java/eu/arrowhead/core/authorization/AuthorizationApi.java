@@ -8,6 +8,7 @@
 package eu.arrowhead.core.authorization;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadCloud;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
@@ -17,7 +18,9 @@ import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.messages.InterCloudAuthEntry;
 import eu.arrowhead.common.messages.IntraCloudAuthEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -68,22 +71,24 @@ public class AuthorizationApi {
 	}
 
 	/**
-	 * Returns all the IntraCloud authorization rights from the database.
+	 * Returns the IntraCloud authorization rights from the database, one page at a time: at most <tt>limit</tt> rights with a greater id than
+	 * <tt>afterId</tt>, ordered by id. If the page is full, the <i>afterId</i> of the next page is sent in the <i>X-Next-After-Id</i> header.
 	 *
 	 * @return List<IntraCloudAuthorization>
 	 */
 	@GET
 	@Path("intracloud")
-	public List<IntraCloudAuthorization> getIntraCloudAuthRights() {
+	public Response getIntraCloudAuthRights(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
 
-		List<IntraCloudAuthorization> authRights = dm.getAll(IntraCloudAuthorization.class, restrictionMap);
-		if (authRights.isEmpty()) {
+		List<IntraCloudAuthorization> authRights = dm.getPage(IntraCloudAuthorization.class, null, afterId, limit);
+		if (authRights.isEmpty() && afterId == 0) {
 			log.info("getIntraCloudAuthRights throws DataNotFoundException.");
 			throw new DataNotFoundException("IntraCloud authorization rights were not found in the database.");
 		}
 
 		log.info("getIntraCloudAuthRights successfully returns " + authRights.size() + " entries.");
-		return authRights;
+		Long nextAfterId = Utility.getNextAfterId(authRights, DatabaseManager.getPageLimit(limit), IntraCloudAuthorization::getId);
+		return Response.ok().entity(authRights).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
 	}
 
 	/**
@@ -192,6 +197,8 @@ public class AuthorizationApi {
 		ArrowheadSystem retrievedSystem;
 		ArrowheadService retrievedService;
 		List<IntraCloudAuthorization> savedAuthRights = new ArrayList<>();
+		// (provider id, service id) pairs of the new rights, the same pair can be in the request more than once
+		Set<List<Long>> newRights = new HashSet<>();
 		for (ArrowheadSystem providerSystem : entry.getProviderList()) {
 			restrictionMap.clear();
 			restrictionMap.put("systemName", providerSystem.getSystemName());
@@ -216,12 +223,14 @@ public class AuthorizationApi {
 				restrictionMap.put("provider", retrievedSystem);
 				restrictionMap.put("service", retrievedService);
 				IntraCloudAuthorization authRight = dm.get(IntraCloudAuthorization.class, restrictionMap);
-				if (authRight == null) {
-					authRight = dm.save(new IntraCloudAuthorization(consumer, retrievedSystem, retrievedService));
-					savedAuthRights.add(authRight);
+				if (authRight == null && newRights.add(Arrays.asList(retrievedSystem.getId(), retrievedService.getId()))) {
+					savedAuthRights.add(new IntraCloudAuthorization(consumer, retrievedSystem, retrievedService));
 				}
 			}
 		}
+		// The new rights are saved in one transaction, in JDBC batches
+		dm.saveAll(savedAuthRights);
+		AuthorizationIndex.addIntraCloudRights(savedAuthRights);
 
 		log.info("addSystemToAuthorized: " + savedAuthRights.size() + " authorization rights created.");
 		GenericEntity<List<IntraCloudAuthorization>> entity = new GenericEntity<List<IntraCloudAuthorization>>(
@@ -236,8 +245,12 @@ public class AuthorizationApi {
 		IntraCloudAuthorization entry = dm.get(IntraCloudAuthorization.class, updatedEntry.getId())
 				.orElseThrow(() -> new DataNotFoundException(
 						"IntraCloudAuthorization entry not found with id: " + updatedEntry.getId()));
+		IntraCloudAuthorization oldEntry = new IntraCloudAuthorization(entry.getConsumer(), entry.getProvider(),
+				entry.getService());
 		entry.updateEntryWith(updatedEntry);
 		entry = dm.merge(entry);
+		AuthorizationIndex.removeIntraCloudRights(Collections.singletonList(oldEntry));
+		AuthorizationIndex.addIntraCloudRights(Collections.singletonList(entry));
 		log.info("updateIntraEntry successfully returns.");
 		return Response.ok().entity(entry).build();
 	}
@@ -251,6 +264,7 @@ public class AuthorizationApi {
 	public Response deleteIntraEntry(@PathParam("id") long id) {
 		return dm.get(IntraCloudAuthorization.class, id).map(entry -> {
 			dm.delete(entry);
+			AuthorizationIndex.removeIntraCloudRights(Collections.singletonList(entry));
 			log.info("deleteIntraEntry successfully returns.");
 			return Response.ok().build();
 		}).<DataNotFoundException>orElseThrow(() -> {
@@ -282,9 +296,8 @@ public class AuthorizationApi {
 		}
 		List<IntraCloudAuthorization> authRightsList = dm.getAll(IntraCloudAuthorization.class, restrictionMap);
 		if (!authRightsList.isEmpty()) {
-			for (IntraCloudAuthorization authRight : authRightsList) {
-				dm.delete(authRight);
-			}
+			dm.delete(authRightsList.toArray(new IntraCloudAuthorization[0]));
+			AuthorizationIndex.removeIntraCloudRights(authRightsList);
 
 			log.info("deleteSystemRelations successfully returns.");
 			return Response.ok().build();
@@ -302,22 +315,24 @@ public class AuthorizationApi {
 	}
 
 	/**
-	 * Returns all the InterCloud authorization rights from the database.
+	 * Returns the InterCloud authorization rights from the database, one page at a time: at most <tt>limit</tt> rights with a greater id than
+	 * <tt>afterId</tt>, ordered by id. If the page is full, the <i>afterId</i> of the next page is sent in the <i>X-Next-After-Id</i> header.
 	 *
 	 * @return List<InterCloudAuthorization>
 	 */
 	@GET
 	@Path("intercloud")
-	public List<InterCloudAuthorization> getInterCloudAuthRights() {
+	public Response getInterCloudAuthRights(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
 
-		List<InterCloudAuthorization> authRights = dm.getAll(InterCloudAuthorization.class, restrictionMap);
-		if (authRights.isEmpty()) {
+		List<InterCloudAuthorization> authRights = dm.getPage(InterCloudAuthorization.class, null, afterId, limit);
+		if (authRights.isEmpty() && afterId == 0) {
 			log.info("getInterCloudAuthRights throws DataNotFoundException.");
 			throw new DataNotFoundException("InterCloud authorization rights were not found in the database.");
 		}
 
 		log.info("getInterCloudAuthRights successfully returns " + authRights.size() + " entries.");
-		return authRights;
+		Long nextAfterId = Utility.getNextAfterId(authRights, DatabaseManager.getPageLimit(limit), InterCloudAuthorization::getId);
+		return Response.ok().entity(authRights).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
 	}
 
 	/**
@@ -420,6 +435,7 @@ public class AuthorizationApi {
 
 		ArrowheadService retrievedService;
 		List<InterCloudAuthorization> savedAuthRights = new ArrayList<>();
+		Set<Long> newRights = new HashSet<>();
 		for (ArrowheadService service : entry.getServiceList()) {
 			restrictionMap.clear();
 			restrictionMap.put("serviceDefinition", service.getServiceDefinition());
@@ -432,11 +448,12 @@ public class AuthorizationApi {
 			restrictionMap.put("cloud", cloud);
 			restrictionMap.put("service", retrievedService);
 			InterCloudAuthorization authRight = dm.get(InterCloudAuthorization.class, restrictionMap);
-			if (authRight == null) {
-				authRight = dm.save(new InterCloudAuthorization(cloud, retrievedService));
-				savedAuthRights.add(authRight);
+			if (authRight == null && newRights.add(retrievedService.getId())) {
+				savedAuthRights.add(new InterCloudAuthorization(cloud, retrievedService));
 			}
 		}
+		dm.saveAll(savedAuthRights);
+		AuthorizationIndex.addInterCloudRights(savedAuthRights);
 
 		log.info("addCloudToAuthorized: " + savedAuthRights.size() + " authorization rights created.");
 		GenericEntity<List<InterCloudAuthorization>> entity = new GenericEntity<List<InterCloudAuthorization>>(
@@ -451,8 +468,11 @@ public class AuthorizationApi {
 		InterCloudAuthorization entry = dm.get(InterCloudAuthorization.class, updatedEntry.getId())
 				.orElseThrow(() -> new DataNotFoundException(
 						"InterCloudAuthorization entry not found with id: " + updatedEntry.getId()));
+		InterCloudAuthorization oldEntry = new InterCloudAuthorization(entry.getCloud(), entry.getService());
 		entry.updateEntryWith(updatedEntry);
 		entry = dm.merge(entry);
+		AuthorizationIndex.removeInterCloudRights(Collections.singletonList(oldEntry));
+		AuthorizationIndex.addInterCloudRights(Collections.singletonList(entry));
 		log.info("InterCloudAuthorization successfully returns.");
 		return Response.ok().entity(entry).build();
 	}
@@ -467,6 +487,7 @@ public class AuthorizationApi {
 	public Response deleteInterEntry(@PathParam("id") long id) {
 		return dm.get(InterCloudAuthorization.class, id).map(entry -> {
 			dm.delete(entry);
+			AuthorizationIndex.removeInterCloudRights(Collections.singletonList(entry));
 			log.info("deleteInterEntry successfully returns.");
 			return Response.ok().build();
 		}).<DataNotFoundException>orElseThrow(() -> {
@@ -499,9 +520,8 @@ public class AuthorizationApi {
 		restrictionMap.put("cloud", cloud);
 		List<InterCloudAuthorization> authRightsList = dm.getAll(InterCloudAuthorization.class, restrictionMap);
 		if (!authRightsList.isEmpty()) {
-			for (InterCloudAuthorization authRight : authRightsList) {
-				dm.delete(authRight);
-			}
+			dm.delete(authRightsList.toArray(new InterCloudAuthorization[0]));
+			AuthorizationIndex.removeInterCloudRights(authRightsList);
 
 			log.info("deleteCloudRelations successfully returns.");
 			return Response.ok().build();
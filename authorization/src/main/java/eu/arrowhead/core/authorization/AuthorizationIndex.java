@@ -0,0 +1,111 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.authorization;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ArrowheadCloud;
+import eu.arrowhead.common.database.ArrowheadService;
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.InterCloudAuthorization;
+import eu.arrowhead.common.database.IntraCloudAuthorization;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory copy of the authorization rights, so the authorization checks of the {@link AuthorizationResource} can be answered without querying
+ * the database. Intra-cloud rights are stored as (consumer, provider, service) triples, inter-cloud rights as (cloud, service) pairs, both using
+ * the natural keys of the entities (systemName/address/port, operator/cloudName and serviceDefinition), since these are the fields the
+ * authorization requests contain. The string parts of the keys are lower case, to match like the case insensitive database lookups did.
+ * <p>
+ * The index is loaded at startup, kept up to date by the {@link AuthorizationApi} write operations, reloaded after changes through the common
+ * <i>mgmt/systems</i>, <i>mgmt/services</i> and <i>mgmt/clouds</i> APIs (see {@link AuthorizationIndexSyncFilter}), and periodically reloaded to
+ * pick up changes made directly in the database.
+ */
+final class AuthorizationIndex {
+
+  private static final Logger log = Logger.getLogger(AuthorizationIndex.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  private static volatile Set<List<Object>> intraCloudRights = ConcurrentHashMap.newKeySet();
+  private static volatile Set<List<Object>> interCloudRights = ConcurrentHashMap.newKeySet();
+
+  private AuthorizationIndex() throws AssertionError {
+    throw new AssertionError("AuthorizationIndex is a non-instantiable class");
+  }
+
+  /**
+   * (Re)builds the whole index from the database. The new index replaces the old one at once, so concurrent checks always see a complete index.
+   */
+  static synchronized void reload() {
+    Set<List<Object>> intra = ConcurrentHashMap.newKeySet();
+    for (IntraCloudAuthorization authRight : dm.getAll(IntraCloudAuthorization.class, null)) {
+      intra.add(intraKey(authRight.getConsumer(), authRight.getProvider(), authRight.getService()));
+    }
+    Set<List<Object>> inter = ConcurrentHashMap.newKeySet();
+    for (InterCloudAuthorization authRight : dm.getAll(InterCloudAuthorization.class, null)) {
+      inter.add(interKey(authRight.getCloud(), authRight.getService()));
+    }
+
+    intraCloudRights = intra;
+    interCloudRights = inter;
+    log.info("Authorization index loaded with " + intra.size() + " intra-cloud and " + inter.size() + " inter-cloud rights");
+  }
+
+  static boolean isSystemAuthorized(ArrowheadSystem consumer, ArrowheadSystem provider, ArrowheadService service) {
+    return intraCloudRights.contains(intraKey(consumer, provider, service));
+  }
+
+  static boolean isCloudAuthorized(ArrowheadCloud cloud, ArrowheadService service) {
+    return interCloudRights.contains(interKey(cloud, service));
+  }
+
+  static synchronized void addIntraCloudRights(Collection<IntraCloudAuthorization> authRights) {
+    for (IntraCloudAuthorization authRight : authRights) {
+      intraCloudRights.add(intraKey(authRight.getConsumer(), authRight.getProvider(), authRight.getService()));
+    }
+  }
+
+  static synchronized void removeIntraCloudRights(Collection<IntraCloudAuthorization> authRights) {
+    for (IntraCloudAuthorization authRight : authRights) {
+      intraCloudRights.remove(intraKey(authRight.getConsumer(), authRight.getProvider(), authRight.getService()));
+    }
+  }
+
+  static synchronized void addInterCloudRights(Collection<InterCloudAuthorization> authRights) {
+    for (InterCloudAuthorization authRight : authRights) {
+      interCloudRights.add(interKey(authRight.getCloud(), authRight.getService()));
+    }
+  }
+
+  static synchronized void removeInterCloudRights(Collection<InterCloudAuthorization> authRights) {
+    for (InterCloudAuthorization authRight : authRights) {
+      interCloudRights.remove(interKey(authRight.getCloud(), authRight.getService()));
+    }
+  }
+
+  private static List<Object> intraKey(ArrowheadSystem consumer, ArrowheadSystem provider, ArrowheadService service) {
+    return Arrays.asList(normalize(consumer.getSystemName()), normalize(consumer.getAddress()), consumer.getPort(),
+                         normalize(provider.getSystemName()), normalize(provider.getAddress()), provider.getPort(),
+                         normalize(service.getServiceDefinition()));
+  }
+
+  private static List<Object> interKey(ArrowheadCloud cloud, ArrowheadService service) {
+    return Arrays.asList(normalize(cloud.getOperator()), normalize(cloud.getCloudName()), normalize(service.getServiceDefinition()));
+  }
+
+  // The database compares these columns case insensitively (utf8_general_ci), so the index has to do the same
+  private static String normalize(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+}
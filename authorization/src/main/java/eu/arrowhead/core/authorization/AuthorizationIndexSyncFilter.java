@@ -0,0 +1,44 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.authorization;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Response.Status.Family;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reloads the {@link AuthorizationIndex} after a successful change through the common <i>mgmt/systems</i>, <i>mgmt/services</i> and
+ * <i>mgmt/clouds</i> APIs. Deleting an entity removes its authorization rights by cascade, and changing its natural key (e.g. the address of a
+ * system) changes the key of its rights, so these changes have to reach the index before the response is sent.
+ */
+@Provider
+public class AuthorizationIndexSyncFilter implements ContainerResponseFilter {
+
+  private static final List<String> ENTITY_PATHS = Arrays.asList("mgmt/systems", "mgmt/services", "mgmt/clouds");
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    if (request.getMethod().equals(HttpMethod.GET) || request.getMethod().equals(HttpMethod.OPTIONS)
+        || response.getStatusInfo().getFamily() != Family.SUCCESSFUL) {
+      return;
+    }
+    String path = request.getUriInfo().getPath();
+    for (String entityPath : ENTITY_PATHS) {
+      if (path.startsWith(entityPath) || path.startsWith("/" + entityPath)) {
+        AuthorizationIndex.reload();
+        return;
+      }
+    }
+  }
+
+}
@@ -10,6 +10,10 @@ package eu.arrowhead.core.authorization;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.log4j.Logger;
 
 import eu.arrowhead.common.ArrowheadMain;
 import eu.arrowhead.common.misc.CoreSystem;
@@ -17,7 +21,10 @@ import eu.arrowhead.common.misc.SecurityUtils;
 
 public class AuthorizationMain extends ArrowheadMain {
 
+	private static final Logger log = Logger.getLogger(AuthorizationMain.class.getName());
+
 	public static boolean enableAuthForCloud;
+	static boolean compactTokens;
 
 	static PrivateKey privateKey;
 	static PublicKey publicKey;
@@ -28,6 +35,26 @@ public class AuthorizationMain extends ArrowheadMain {
 		privateKey = SecurityUtils.getPrivateKey(keyStore, props.getProperty("keystorepass"));
 		publicKey = SecurityUtils.getFirstCertFromKeyStore(keyStore).getPublicKey();
 		enableAuthForCloud = props.getBooleanProperty("enable_auth_for_cloud", false);
+		compactTokens = props.getProperty("token_format", "rsa").equalsIgnoreCase("compact");
+
+		// Loading the authorization rights into memory before the web-server starts serving requests
+		AuthorizationIndex.reload();
+		int reloadInterval = props.getIntProperty("auth_index_reload_interval", 10);
+		if (reloadInterval > 0) {
+			TimerTask reloadTask = new TimerTask() {
+				@Override
+				public void run() {
+					// An exception would cancel the Timer, and the index would never be reloaded again
+					try {
+						AuthorizationIndex.reload();
+					} catch (RuntimeException e) {
+						log.error("Reloading the authorization index failed: " + e.getMessage(), e);
+					}
+				}
+			};
+			Timer reloadTimer = new Timer(true);
+			reloadTimer.schedule(reloadTask, reloadInterval * 60L * 1000L, reloadInterval * 60L * 1000L);
+		}
 
 		String[] packages = { "eu.arrowhead.common", "eu.arrowhead.core.authorization" };
 		init(CoreSystem.AUTHORIZATION, args, null, packages);
@@ -9,14 +9,13 @@ package eu.arrowhead.core.authorization;
 
 import eu.arrowhead.common.DatabaseManager;
 import eu.arrowhead.common.database.ArrowheadCloud;
-import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
-import eu.arrowhead.common.database.InterCloudAuthorization;
-import eu.arrowhead.common.database.IntraCloudAuthorization;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.messages.ArrowheadToken;
 import eu.arrowhead.common.messages.InterCloudAuthRequest;
 import eu.arrowhead.common.messages.InterCloudAuthResponse;
+import eu.arrowhead.common.messages.IntraCloudAuthBatchRequest;
+import eu.arrowhead.common.messages.IntraCloudAuthBatchResponse;
 import eu.arrowhead.common.messages.IntraCloudAuthRequest;
 import eu.arrowhead.common.messages.IntraCloudAuthResponse;
 import eu.arrowhead.common.messages.TokenData;
@@ -25,6 +24,7 @@ import eu.arrowhead.common.messages.TokenGenerationResponse;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -44,7 +44,6 @@ import org.apache.log4j.Logger;
 @Produces(MediaType.APPLICATION_JSON)
 public class AuthorizationResource {
 
-  private final HashMap<String, Object> restrictionMap = new HashMap<>();
   private static final DatabaseManager dm = DatabaseManager.getInstance();
   private static final Logger log = Logger.getLogger(AuthorizationResource.class.getName());
 
@@ -64,57 +63,62 @@ public class AuthorizationResource {
   @PUT
   @Path("intracloud")
   public Response isSystemAuthorized(@Valid IntraCloudAuthRequest request) {
-	  restrictionMap.put("systemName", request.getConsumer().getSystemName());
-	    restrictionMap.put("address", request.getConsumer().getAddress());
-	    restrictionMap.put("port", request.getConsumer().getPort());
-	    ArrowheadSystem consumer = dm.get(ArrowheadSystem.class, restrictionMap);
-	    if (consumer == null) {
-	      log.error("Consumer is not in the database. isSystemAuthorized DataNotFoundException");
-	      throw new DataNotFoundException("Consumer System is not in the authorization database. " + request.getConsumer().getSystemName(),
-	                                      Status.NOT_FOUND.getStatusCode());
-	    }
-
-	    IntraCloudAuthResponse response = new IntraCloudAuthResponse();
-	    HashMap<ArrowheadSystem, Boolean> authorizationState = new HashMap<>();
-	    restrictionMap.clear();
-	    restrictionMap.put("serviceDefinition", request.getService().getServiceDefinition());
-	    ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
-	    if (service == null) {
-	      log.info("Service " + request.getService().toString() + " is not in the database. Returning NOT AUTHORIZED state for the consumer.");
-	      for (ArrowheadSystem provider : request.getProviders()) {
-	        authorizationState.put(provider, false);
-	      }
-	      response.setAuthorizationMap(authorizationState);
-	      return Response.status(Status.OK).entity(response).build();
-	    }
-
-	    IntraCloudAuthorization authRight;
-	    int authorizedCount = 0;
-	    for (ArrowheadSystem provider : request.getProviders()) {
-	      restrictionMap.clear();
-	      restrictionMap.put("systemName", provider.getSystemName());
-	      restrictionMap.put("address", provider.getAddress());
-	      restrictionMap.put("port", provider.getPort());
-	      ArrowheadSystem retrievedSystem = dm.get(ArrowheadSystem.class, restrictionMap);
-
-	      restrictionMap.clear();
-	      restrictionMap.put("consumer", consumer);
-	      restrictionMap.put("provider", retrievedSystem);
-	      restrictionMap.put("service", service);
-	      authRight = dm.get(IntraCloudAuthorization.class, restrictionMap);
-
-	      if (authRight == null) {
-	        authorizationState.put(provider, false);
-	      } else {
-	        authorizationState.put(provider, true);
-	        authorizedCount++;
-	      }
-	    }
+    // The authorization rights are checked in the in-memory index
+    HashMap<ArrowheadSystem, Boolean> authorizationState = new HashMap<>();
+    int authorizedCount = 0;
+    for (ArrowheadSystem provider : request.getProviders()) {
+      boolean authorized = AuthorizationIndex.isSystemAuthorized(request.getConsumer(), provider, request.getService());
+      authorizationState.put(provider, authorized);
+      if (authorized) {
+        authorizedCount++;
+      }
+    }
+
+    // Unknown consumers are reported with an error, which can only be decided by the database, when none of the providers are authorized
+    if (authorizedCount == 0) {
+      Map<String, Object> restrictionMap = new HashMap<>();
+      restrictionMap.put("systemName", request.getConsumer().getSystemName());
+      restrictionMap.put("address", request.getConsumer().getAddress());
+      restrictionMap.put("port", request.getConsumer().getPort());
+      ArrowheadSystem consumer = dm.get(ArrowheadSystem.class, restrictionMap);
+      if (consumer == null) {
+        log.error("Consumer is not in the database. isSystemAuthorized DataNotFoundException");
+        throw new DataNotFoundException("Consumer System is not in the authorization database. " + request.getConsumer().getSystemName(),
+                                        Status.NOT_FOUND.getStatusCode());
+      }
+    }
+
+    log.info(
+        "IntraCloud auth check for consumer " + request.getConsumer().getSystemName() + " returns with " + authorizedCount + " possible provider");
+    return Response.status(Status.OK).entity(new IntraCloudAuthResponse(authorizationState)).build();
+  }
 
-	    log.info(
-	        "IntraCloud auth check for consumer " + request.getConsumer().getSystemName() + " returns with " + authorizedCount + " possible provider");
-	    response.setAuthorizationMap(authorizationState);
-	    return Response.status(Status.OK).entity(response).build();
+  /**
+   * Batch version of {@link #isSystemAuthorized(IntraCloudAuthRequest)}: checks multiple consumer/service/providers combinations at once, using
+   * only the in-memory {@link AuthorizationIndex}. Unlike the single check, an unknown consumer does not fail the request, all of its providers
+   * are returned as NOT AUTHORIZED instead.
+   *
+   * @return IntraCloudAuthBatchResponse, where the n-th response belongs to the n-th request
+   */
+  @PUT
+  @Path("intracloud/batch")
+  public Response areSystemsAuthorized(@Valid IntraCloudAuthBatchRequest request) {
+    List<IntraCloudAuthResponse> responses = new ArrayList<>(request.getRequests().size());
+    int authorizedCount = 0;
+    for (IntraCloudAuthRequest authRequest : request.getRequests()) {
+      HashMap<ArrowheadSystem, Boolean> authorizationState = new HashMap<>();
+      for (ArrowheadSystem provider : authRequest.getProviders()) {
+        boolean authorized = AuthorizationIndex.isSystemAuthorized(authRequest.getConsumer(), provider, authRequest.getService());
+        authorizationState.put(provider, authorized);
+        if (authorized) {
+          authorizedCount++;
+        }
+      }
+      responses.add(new IntraCloudAuthResponse(authorizationState));
+    }
+
+    log.info("IntraCloud batch auth check for " + responses.size() + " requests returns with " + authorizedCount + " possible provider");
+    return Response.status(Status.OK).entity(new IntraCloudAuthBatchResponse(responses)).build();
   }
 
   /**
@@ -127,36 +131,24 @@ public class AuthorizationResource {
   @PUT
   @Path("intercloud")
   public Response isCloudAuthorized(@Valid InterCloudAuthRequest request) {
-	  restrictionMap.put("operator", request.getCloud().getOperator());
-	    restrictionMap.put("cloudName", request.getCloud().getCloudName());
-	    ArrowheadCloud cloud = dm.get(ArrowheadCloud.class, restrictionMap);
-	    if (cloud == null) {
-	      log.error("Requester cloud is not in the database. isCloudAuthorized DataNotFoundException");
-	      throw new DataNotFoundException("Consumer Cloud is not in the authorization database. " + request.getCloud().toString(),
-	                                      Status.NOT_FOUND.getStatusCode());
-	    }
-
-	    restrictionMap.clear();
-	    restrictionMap.put("serviceDefinition", request.getService().getServiceDefinition());
-	    ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
-	    if (service == null) {
-	      log.info("Service " + request.getService().toString() + " is not in the database. Returning NOT AUTHORIZED state for the consumer.");
-	      return Response.status(Status.OK).entity(new InterCloudAuthResponse(false)).build();
-	    }
-
-	    InterCloudAuthorization authRight;
-	    restrictionMap.clear();
-	    restrictionMap.put("cloud", cloud);
-	    restrictionMap.put("service", service);
-	    authRight = dm.get(InterCloudAuthorization.class, restrictionMap);
-
-	    boolean isAuthorized = false;
-	    if (authRight != null) {
-	      isAuthorized = true;
-	    }
-
-	    log.info("Consumer Cloud is authorized: " + isAuthorized);
-	    return Response.status(Status.OK).entity(new InterCloudAuthResponse(isAuthorized)).build();
+    if (AuthorizationIndex.isCloudAuthorized(request.getCloud(), request.getService())) {
+      log.info("Consumer Cloud is authorized: true");
+      return Response.status(Status.OK).entity(new InterCloudAuthResponse(true)).build();
+    }
+
+    // Unknown clouds are reported with an error, this can only be decided by the database
+    Map<String, Object> restrictionMap = new HashMap<>();
+    restrictionMap.put("operator", request.getCloud().getOperator());
+    restrictionMap.put("cloudName", request.getCloud().getCloudName());
+    ArrowheadCloud cloud = dm.get(ArrowheadCloud.class, restrictionMap);
+    if (cloud == null) {
+      log.error("Requester cloud is not in the database. isCloudAuthorized DataNotFoundException");
+      throw new DataNotFoundException("Consumer Cloud is not in the authorization database. " + request.getCloud().toString(),
+                                      Status.NOT_FOUND.getStatusCode());
+    }
+
+    log.info("Consumer Cloud is authorized: false");
+    return Response.status(Status.OK).entity(new InterCloudAuthResponse(false)).build();
   }
 
   /**
@@ -15,6 +15,7 @@ import eu.arrowhead.common.exception.AuthException;
 import eu.arrowhead.common.messages.ArrowheadToken;
 import eu.arrowhead.common.messages.RawTokenInfo;
 import eu.arrowhead.common.messages.TokenGenerationRequest;
+import eu.arrowhead.common.misc.CompactTokenUtils;
 import eu.arrowhead.common.misc.SecurityUtils;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
@@ -24,10 +25,17 @@ import java.security.PublicKey;
 import java.security.Security;
 import java.security.Signature;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceConfigurationError;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.crypto.Cipher;
 import javax.crypto.NoSuchPaddingException;
 import javax.ws.rs.core.Response.Status;
@@ -38,99 +46,46 @@ class TokenGenerationService {
 
   private static final Logger log = Logger.getLogger(TokenGenerationService.class.getName());
 
-  static List<ArrowheadToken> generateTokens(TokenGenerationRequest request) {
-    // First get the public key for each provider
-    List<PublicKey> publicKeys = getProviderPublicKeys(request.getProviders());
+  // RSA with PKCS1 padding can encrypt at most (key size in bytes - 11) bytes, which is 245 bytes for 2048 bit keys
+  private static final int MAX_TOKEN_INFO_LENGTH = 244;
+  // Token creation is only split between threads above this number of providers, below it the hand-off costs more than it saves
+  private static final int PARALLEL_THRESHOLD = 4;
+  private static final int MAX_CACHED_KEYS = 10000;
 
-    // Cryptographic object initializations
-    Security.addProvider(new BouncyCastleProvider());
-    Cipher cipher;
-    try {
-      cipher = Cipher.getInstance("RSA/NONE/PKCS1Padding", "BC");
-    } catch (NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException e) {
-      log.fatal("Cipher.getInstance(String) throws exception, code needs to be changed!");
-      throw new AssertionError("Cipher.getInstance(String) throws exception, code needs to be changed!", e);
-    }
-    Signature signature;
-    try {
-      signature = Signature.getInstance("SHA256withRSA", "BC");
-      signature.initSign(AuthorizationMain.privateKey);
-    } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
-      log.fatal("Signature.getInstance(String) throws exception, code needs to be changed!");
-      throw new AssertionError("Signature.getInstance(String) throws exception, code needs to be changed!", e);
-    } catch (InvalidKeyException e) {
-      log.fatal("The private key of the Authorization module is invalid, keystore needs to be changed!");
-      throw new ServiceConfigurationError("The private key of the Authorization module is invalid, keystore needs to be changed!", e);
-    }
+  private static final Map<String, PublicKey> publicKeyCache = new ConcurrentHashMap<>();
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+  private static final ExecutorService tokenPool;
 
-    // Create the ArrowheadToken for each provider
-    RawTokenInfo rawTokenInfo = new RawTokenInfo();
-    List<ArrowheadToken> tokens = new ArrayList<>();
-    for (PublicKey key : publicKeys) {
-      // Can not generate token without the provider public key
-      if (key == null) {
-        tokens.add(null);
-        continue;
-      }
-
-      // Set consumer info string
-      String c = request.getConsumer().getSystemName();
-      if (request.getConsumerCloud() != null) {
-        c = c.concat(".").concat(request.getConsumerCloud().getCloudName()).concat(".").concat(request.getConsumerCloud().getOperator());
-      } else {
-        boolean secureMode = Boolean.valueOf(System.getProperty("is_secure", "false"));
-        ArrowheadCloud ownCloud = Utility.getOwnCloud(secureMode);
-        c = c.concat(".").concat(ownCloud.getCloudName()).concat(".").concat(ownCloud.getOperator());
-      }
-      rawTokenInfo.setC(c);
+  // Cipher and Signature objects are not thread-safe, but expensive to create, so every thread reuses its own instances
+  private static final ThreadLocal<Cipher> cipher = ThreadLocal.withInitial(TokenGenerationService::createCipher);
+  private static final ThreadLocal<Signature> signature = ThreadLocal.withInitial(TokenGenerationService::createSignature);
 
-      String s = request.getService().getServiceDefinition();
-      // Set service info string
-      List<String> interfaces = new ArrayList<>(request.getService().getInterfaces());
-      if (!interfaces.isEmpty()) {
-        s = interfaces.get(0) + "." + s;
-      }
-      rawTokenInfo.setS(s);
-
-      // Set the token validity duration
-      if (request.getDuration() != 0) {
-        long endTime = System.currentTimeMillis() + request.getDuration();
-        rawTokenInfo.setE(endTime);
-      } else {
-        // duration = 0 means a token is valid without a time limitation
-        rawTokenInfo.setE(0L);
-      }
+  static {
+    if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+    tokenPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+      Thread thread = new Thread(runnable, "token-generation-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
 
-      // There is an upper limit for the size of the token info, skip providers which exceeds this limit
-      String json = Utility.toPrettyJson(null, rawTokenInfo);
-      if (json == null) {
-        log.error("RawTokenInfo serialization failed. Skipped provider.");
-        continue;
-      }
-      System.out.println("Raw token info: ");
-      System.out.println(json);
-      if (json.length() > 244) {
-        tokens.add(null);
-        log.error("ArrowheadToken exceeded the size limit. Skipped provider.");
-        continue;
-      }
+  static List<ArrowheadToken> generateTokens(TokenGenerationRequest request) {
+    List<Callable<ArrowheadToken>> tasks = AuthorizationMain.compactTokens ? createCompactTokenTasks(request) : createTokenTasks(request);
 
-      // Finally, generate the token and signature strings
-      try {
-        cipher.init(Cipher.ENCRYPT_MODE, key);
-        byte[] tokenBytes = cipher.doFinal(json.getBytes(StandardCharsets.UTF_8));
-        System.out.println("Token bytes: " + Arrays.toString(tokenBytes));
-        signature.update(tokenBytes);
-        byte[] sigBytes = signature.sign();
-        System.out.println("Signature bytes: " + Arrays.toString(sigBytes));
-
-        String tokenString = Base64.getEncoder().encodeToString(tokenBytes);
-        String signatureString = Base64.getEncoder().encodeToString(sigBytes);
-        tokens.add(new ArrowheadToken(tokenString, signatureString));
-      } catch (Exception e) {
-        e.printStackTrace();
-        log.error("Cipher or Signature class throws public key specific exception: " + e.getMessage());
-        tokens.add(null);
+    List<ArrowheadToken> tokens = new ArrayList<>(tasks.size());
+    if (tasks.size() > PARALLEL_THRESHOLD) {
+      tokens = createTokensInParallel(tasks);
+    } else {
+      for (Callable<ArrowheadToken> task : tasks) {
+        try {
+          tokens.add(task.call());
+        } catch (Exception e) {
+          // The tasks catch their own exceptions, so this should not happen
+          log.error("Token generation failed: " + e.getMessage(), e);
+          tokens.add(null);
+        }
       }
     }
 
@@ -150,14 +105,158 @@ class TokenGenerationService {
     return tokens;
   }
 
+  private static List<Callable<ArrowheadToken>> createTokenTasks(TokenGenerationRequest request) {
+    // First get the public key for each provider
+    List<PublicKey> publicKeys = getProviderPublicKeys(request.getProviders());
+
+    // The token info is the same for every provider, only the encryption key differs
+    String json = Utility.toPrettyJson(null, createRawTokenInfo(request));
+    List<Callable<ArrowheadToken>> tasks = new ArrayList<>(publicKeys.size());
+    if (json == null) {
+      log.error("RawTokenInfo serialization failed. Skipped providers.");
+    } else if (json.length() > MAX_TOKEN_INFO_LENGTH) {
+      // There is an upper limit for the size of the token info, skip providers which exceeds this limit
+      log.error("ArrowheadToken exceeded the size limit. Skipped providers.");
+    } else {
+      byte[] tokenInfo = json.getBytes(StandardCharsets.UTF_8);
+      for (PublicKey key : publicKeys) {
+        tasks.add(() -> createToken(key, tokenInfo));
+      }
+    }
+    return tasks;
+  }
+
+  private static List<Callable<ArrowheadToken>> createCompactTokenTasks(TokenGenerationRequest request) {
+    // Compact tokens are bound to the provider by its system name, instead of its public key
+    RawTokenInfo commonTokenInfo = createRawTokenInfo(request);
+    List<Callable<ArrowheadToken>> tasks = new ArrayList<>(request.getProviders().size());
+    for (ArrowheadSystem provider : request.getProviders()) {
+      RawTokenInfo rawTokenInfo = new RawTokenInfo();
+      rawTokenInfo.setC(commonTokenInfo.getC());
+      rawTokenInfo.setS(commonTokenInfo.getS());
+      rawTokenInfo.setE(commonTokenInfo.getE());
+      rawTokenInfo.setP(provider.getSystemName());
+      tasks.add(() -> createCompactToken(rawTokenInfo));
+    }
+    return tasks;
+  }
+
+  private static RawTokenInfo createRawTokenInfo(TokenGenerationRequest request) {
+    RawTokenInfo rawTokenInfo = new RawTokenInfo();
+
+    // Set consumer info string
+    String c = request.getConsumer().getSystemName();
+    if (request.getConsumerCloud() != null) {
+      c = c.concat(".").concat(request.getConsumerCloud().getCloudName()).concat(".").concat(request.getConsumerCloud().getOperator());
+    } else {
+      boolean secureMode = Boolean.valueOf(System.getProperty("is_secure", "false"));
+      ArrowheadCloud ownCloud = Utility.getOwnCloud(secureMode);
+      c = c.concat(".").concat(ownCloud.getCloudName()).concat(".").concat(ownCloud.getOperator());
+    }
+    rawTokenInfo.setC(c);
+
+    String s = request.getService().getServiceDefinition();
+    // Set service info string
+    List<String> interfaces = new ArrayList<>(request.getService().getInterfaces());
+    if (!interfaces.isEmpty()) {
+      s = interfaces.get(0) + "." + s;
+    }
+    rawTokenInfo.setS(s);
+
+    // Set the token validity duration
+    if (request.getDuration() != 0) {
+      long endTime = System.currentTimeMillis() + request.getDuration();
+      rawTokenInfo.setE(endTime);
+    } else {
+      // duration = 0 means a token is valid without a time limitation
+      rawTokenInfo.setE(0L);
+    }
+
+    return rawTokenInfo;
+  }
+
+  private static List<ArrowheadToken> createTokensInParallel(List<Callable<ArrowheadToken>> tasks) {
+    List<ArrowheadToken> tokens = new ArrayList<>(tasks.size());
+    try {
+      for (Future<ArrowheadToken> future : tokenPool.invokeAll(tasks)) {
+        tokens.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ArrowheadException("Token generation was interrupted.", Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+    } catch (ExecutionException e) {
+      // The tasks catch their own exceptions, so this should not happen
+      throw new ArrowheadException("Token generation failed: " + e.getCause().getMessage(), Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+    }
+    return tokens;
+  }
+
+  /**
+   * Encrypts the token info with the public key of the provider, and signs the encrypted bytes with the private key of the Authorization. Returns
+   * null if the token can not be created for this provider.
+   */
+  private static ArrowheadToken createToken(PublicKey key, byte[] tokenInfo) {
+    // Can not generate token without the provider public key
+    if (key == null) {
+      return null;
+    }
+
+    try {
+      Cipher threadCipher = cipher.get();
+      threadCipher.init(Cipher.ENCRYPT_MODE, key);
+      byte[] tokenBytes = threadCipher.doFinal(tokenInfo);
+      Signature threadSignature = signature.get();
+      threadSignature.update(tokenBytes);
+      byte[] sigBytes = threadSignature.sign();
+
+      String tokenString = Base64.getEncoder().encodeToString(tokenBytes);
+      String signatureString = Base64.getEncoder().encodeToString(sigBytes);
+      return new ArrowheadToken(tokenString, signatureString);
+    } catch (Exception e) {
+      log.error("Cipher or Signature class throws public key specific exception: " + e.getMessage(), e);
+      return null;
+    }
+  }
+
+  private static ArrowheadToken createCompactToken(RawTokenInfo rawTokenInfo) {
+    try {
+      String token = CompactTokenUtils.createToken(rawTokenInfo, AuthorizationMain.privateKey);
+      return new ArrowheadToken(token, CompactTokenUtils.getSignature(token));
+    } catch (ArrowheadException e) {
+      log.error("Compact token generation failed: " + e.getMessage(), e);
+      return null;
+    }
+  }
+
+  private static Cipher createCipher() {
+    try {
+      return Cipher.getInstance("RSA/NONE/PKCS1Padding", BouncyCastleProvider.PROVIDER_NAME);
+    } catch (NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException e) {
+      log.fatal("Cipher.getInstance(String) throws exception, code needs to be changed!");
+      throw new AssertionError("Cipher.getInstance(String) throws exception, code needs to be changed!", e);
+    }
+  }
+
+  private static Signature createSignature() {
+    try {
+      Signature signature = Signature.getInstance("SHA256withRSA", BouncyCastleProvider.PROVIDER_NAME);
+      signature.initSign(AuthorizationMain.privateKey);
+      return signature;
+    } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+      log.fatal("Signature.getInstance(String) throws exception, code needs to be changed!");
+      throw new AssertionError("Signature.getInstance(String) throws exception, code needs to be changed!", e);
+    } catch (InvalidKeyException e) {
+      log.fatal("The private key of the Authorization module is invalid, keystore needs to be changed!");
+      throw new ServiceConfigurationError("The private key of the Authorization module is invalid, keystore needs to be changed!", e);
+    }
+  }
 
   private static List<PublicKey> getProviderPublicKeys(List<ArrowheadSystem> providers) {
     List<PublicKey> keys = new ArrayList<>();
 
     for (ArrowheadSystem provider : providers) {
       try {
-        PublicKey key = SecurityUtils.getPublicKey(provider.getAuthenticationInfo(), false);
-        keys.add(key);
+        keys.add(getPublicKey(provider.getAuthenticationInfo()));
       } catch (AuthException e) {
         log.error("The stored auth info for the ArrowheadSystem (" + provider.getSystemName()
                       + ") is not a proper RSA public key spec, or it is incorrectly encoded, or missing. The public key can not be decoded from "
@@ -182,4 +281,23 @@ class TokenGenerationService {
     return keys;
   }
 
-}
\ No newline at end of file
+  /**
+   * Decoding the public key spec is relatively expensive, and the same providers show up in the token requests again and again, so the decoded keys
+   * are cached by their (Base64 encoded) spec.
+   */
+  private static PublicKey getPublicKey(String authInfo) {
+    if (authInfo == null) {
+      return SecurityUtils.getPublicKey(null, false);
+    }
+    PublicKey key = publicKeyCache.get(authInfo);
+    if (key == null) {
+      key = SecurityUtils.getPublicKey(authInfo, false);
+      if (publicKeyCache.size() >= MAX_CACHED_KEYS) {
+        publicKeyCache.clear();
+      }
+      publicKeyCache.put(authInfo, key);
+    }
+    return key;
+  }
+
+}
@@ -34,9 +34,11 @@ import org.eclipse.milo.opcua.sdk.server.nodes.UaNodeContext;
 import org.glassfish.grizzly.http.server.CLStaticHttpHandler;
 import org.glassfish.grizzly.http.server.HttpHandler;
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
 import org.glassfish.grizzly.ssl.SSLContextConfigurator;
 import org.glassfish.grizzly.ssl.SSLContextConfigurator.GenericStoreException;
 import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
@@ -77,6 +79,7 @@ public abstract class ArrowheadMain {
 	{
 		DatabaseManager.init();
 		PropertyConfigurator.configure(props);
+		HttpClientPool.configure(props);
 	}
 
 	protected void init(CoreSystem coreSystem, String[] args, Set<Class<?>> classes, String[] packages) {
@@ -238,6 +241,14 @@ public abstract class ArrowheadMain {
 		// Allow message payload for GET and DELETE requests - ONLY to provide custom
 		// error message for them
 		server.getServerConfiguration().setAllowPayloadForUndefinedHttpMethods(true);
+		// Number of threads serving the requests (0 keeps the Grizzly default, which depends on the number of CPU cores)
+		int workerThreads = props.getIntProperty("server_worker_threads", 0);
+		if (workerThreads > 0) {
+			for (NetworkListener listener : server.getListeners()) {
+				listener.getTransport().setWorkerThreadPoolConfig(
+						ThreadPoolConfig.defaultConfig().setCorePoolSize(workerThreads).setMaxPoolSize(workerThreads));
+			}
+		}
 	}
 
 	private void shutdown() {
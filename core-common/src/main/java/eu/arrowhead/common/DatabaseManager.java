@@ -11,21 +11,29 @@ import eu.arrowhead.common.exception.ArrowheadException;
 import eu.arrowhead.common.exception.DuplicateEntryException;
 import eu.arrowhead.common.misc.TypeSafeProperties;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import javax.persistence.PersistenceException;
 import javax.ws.rs.core.Response.Status;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.query.Query;
@@ -41,6 +49,10 @@ public class DatabaseManager {
   private static String dbUser;
   private static String dbPassword;
   private static final Logger log = Logger.getLogger(DatabaseManager.class.getName());
+  private static final int MAX_PAGE_SIZE = prop.getIntProperty("max_page_size", 1000);
+  private static final int SCROLL_FETCH_SIZE = 100;
+  // The same as hibernate.jdbc.batch_size in the hibernate.cfg.xml files
+  private static final int JDBC_BATCH_SIZE = 50;
 
   static {
     if (prop.containsKey("db_address") || prop.containsKey("log4j.appender.DB.URL")) {
@@ -224,6 +236,238 @@ public class DatabaseManager {
     return retrievedList;
   }
 
+  /**
+   * Returns all the entities where every given field has one of the values from its collection (the restrictions are joined with AND, each
+   * collection becomes an SQL <i>IN</i> clause). Useful to resolve a set of lookups with one query instead of one query per value.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> getAllIn(Class<T> queryClass, Map<String, ? extends Collection<?>> restrictionMap) {
+    for (Collection<?> values : restrictionMap.values()) {
+      if (values.isEmpty()) {
+        return new ArrayList<>();
+      }
+    }
+
+    List<T> retrievedList;
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      //NOTE session.createCriteria will be removed in Hibernate 6
+      //noinspection deprecation
+      Criteria criteria = session.createCriteria(queryClass);
+      for (Entry<String, ? extends Collection<?>> entry : restrictionMap.entrySet()) {
+        criteria.add(Restrictions.in(entry.getKey(), entry.getValue()));
+      }
+      retrievedList = (List<T>) criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY).list();
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("getAllIn throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+
+    return retrievedList;
+  }
+
+  /**
+   * Returns the maximum size of a page requested with the given limit: the limit capped at <tt>max_page_size</tt> (0 means <tt>max_page_size</tt>).
+   * A page of this size may be followed by more entities.
+   */
+  public static int getPageLimit(int limit) {
+    return limit <= 0 || limit > MAX_PAGE_SIZE ? MAX_PAGE_SIZE : limit;
+  }
+
+  /**
+   * Returns one page of the entities matching the restrictions, ordered by id: at most <tt>limit</tt> entities with a greater id than
+   * <tt>afterId</tt> (keyset pagination, the next page starts after the id of the last returned entity). The limit is capped at
+   * <tt>max_page_size</tt>, and 0 means <tt>max_page_size</tt> (see {@link #getPageLimit(int)}).
+   * <p>
+   * The ids of the page are selected first, and only then the entities, because a row limit on a query fetching EAGER collections would be
+   * applied in memory, after loading the whole table.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> getPage(Class<T> queryClass, Map<String, Object> restrictionMap, long afterId, int limit) {
+    limit = getPageLimit(limit);
+
+    List<T> retrievedList;
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      //NOTE session.createCriteria will be removed in Hibernate 6
+      //noinspection deprecation
+      Criteria idCriteria = session.createCriteria(queryClass);
+      if (restrictionMap != null && !restrictionMap.isEmpty()) {
+        for (Entry<String, Object> entry : restrictionMap.entrySet()) {
+          idCriteria.add(Restrictions.eq(entry.getKey(), entry.getValue()));
+        }
+      }
+      idCriteria.add(Restrictions.gt("id", afterId)).addOrder(Order.asc("id")).setProjection(Projections.id()).setMaxResults(limit);
+      List<Long> ids = (List<Long>) idCriteria.list();
+
+      if (ids.isEmpty()) {
+        retrievedList = new ArrayList<>();
+      } else {
+        //noinspection deprecation
+        Criteria criteria = session.createCriteria(queryClass).add(Restrictions.in("id", ids)).addOrder(Order.asc("id"));
+        retrievedList = (List<T>) criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY).list();
+      }
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("getPage throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+
+    return retrievedList;
+  }
+
+  /**
+   * Passes every entity matching the restrictions to the action, ordered by id, without loading all of them into memory at once. The rows are
+   * read with a forward-only cursor, and the read-only entities are evicted from the session after every <tt>SCROLL_FETCH_SIZE</tt> rows, so
+   * the action gets detached entities (with their EAGER associations loaded).
+   * <p>
+   * The MySQL driver only fetches <tt>SCROLL_FETCH_SIZE</tt> rows at a time (from a server-side cursor) with the <i>useCursorFetch=true</i>
+   * connection property, which is set in the <i>hibernate.cfg.xml</i> files of the Core Systems. Without it the whole result is read into
+   * memory by the driver.
+   */
+  public <T> void forEach(Class<T> queryClass, Map<String, Object> restrictionMap, Consumer<? super T> action) {
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      StringBuilder hql = new StringBuilder("SELECT e FROM ").append(queryClass.getName()).append(" e");
+      List<Object> values = new ArrayList<>();
+      if (restrictionMap != null && !restrictionMap.isEmpty()) {
+        for (Entry<String, Object> entry : restrictionMap.entrySet()) {
+          hql.append(values.isEmpty() ? " WHERE " : " AND ").append("e.").append(entry.getKey()).append(" = :p").append(values.size());
+          values.add(entry.getValue());
+        }
+      }
+      hql.append(" ORDER BY e.id");
+
+      Query<T> query = session.createQuery(hql.toString(), queryClass);
+      for (int i = 0; i < values.size(); i++) {
+        query.setParameter("p" + i, values.get(i));
+      }
+      query.setReadOnly(true);
+      query.setFetchSize(SCROLL_FETCH_SIZE);
+
+      int count = 0;
+      try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+        while (results.next()) {
+          @SuppressWarnings("unchecked") T entity = (T) results.get(0);
+          action.accept(entity);
+          if (++count % SCROLL_FETCH_SIZE == 0) {
+            session.clear();
+          }
+        }
+      }
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("forEach throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Runs a HQL select query with named parameters. Collection parameter values are bound as parameter lists, to be used in <i>IN</i>
+   * expressions. Useful for queries which can not be expressed with simple field restrictions (joins, subqueries, ordering).
+   */
+  public <T> List<T> getAllByQuery(String hql, Class<T> resultClass, Map<String, Object> parameters) {
+    return getAllByQuery(hql, resultClass, parameters, 0);
+  }
+
+  /**
+   * Same as {@link #getAllByQuery(String, Class, Map)}, but returns at most <tt>maxResults</tt> rows (0 means no limit). Combined with an ordered
+   * query and a <i>WHERE id &gt; :lastId</i> restriction, it can be used to go through a large table page by page.
+   */
+  public <T> List<T> getAllByQuery(String hql, Class<T> resultClass, Map<String, Object> parameters, int maxResults) {
+    List<T> retrievedList;
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      Query<T> query = session.createQuery(hql, resultClass);
+      bindParameters(query, parameters);
+      if (maxResults > 0) {
+        query.setMaxResults(maxResults);
+      }
+      retrievedList = query.list();
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("getAllByQuery throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+
+    return retrievedList;
+  }
+
+  /**
+   * Runs a HQL bulk <i>UPDATE</i> or <i>DELETE</i> statement with named parameters (bound the same way as in {@link #getAllByQuery}), in one
+   * transaction. Bulk statements do not load the affected entities, and do not cascade to associated entities.
+   *
+   * @return the number of affected rows
+   */
+  public int executeUpdate(String hql, Map<String, Object> parameters) {
+    int affectedRows;
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      Query<?> query = session.createQuery(hql);
+      bindParameters(query, parameters);
+      affectedRows = query.executeUpdate();
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("executeUpdate throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+
+    return affectedRows;
+  }
+
+  /**
+   * Returns the number of rows and the highest id of an entity table, which together can be used as a cheap marker to detect inserts and deletes
+   * made by other systems sharing the database.
+   */
+  public <T> List<Object> getRowCountAndMaxId(Class<T> queryClass) {
+    Object[] result;
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      //NOTE session.createCriteria will be removed in Hibernate 6
+      //noinspection deprecation
+      Criteria criteria = session.createCriteria(queryClass);
+      criteria.setProjection(Projections.projectionList().add(Projections.rowCount()).add(Projections.max("id")));
+      result = (Object[]) criteria.uniqueResult();
+      transaction.commit();
+    } catch (Exception e) {
+      log.error("getRowCountAndMaxId throws exception: " + e.getMessage(), e);
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      throw e;
+    }
+
+    return Arrays.asList(result);
+  }
+
 
   @SafeVarargs
   public final <T> T save(T... objects) {
@@ -304,6 +548,139 @@ public class DatabaseManager {
     return objects[0];
   }
 
+  /**
+   * Saves the new (transient) objects and updates the detached ones, in the given order, in one transaction. Unlike {@link #merge}, the given
+   * instances themselves become persistent, so objects saved earlier in the list can be referenced by the later ones (e.g. new services and
+   * systems by new Service Registry entries). The statements are sent in JDBC batches (see {@link #saveAll}).
+   */
+  public void saveOrUpdateAll(Collection<?> objects) {
+    writeInBatches("saveOrUpdateAll", objects, (session, object) -> {
+      session.saveOrUpdate(object);
+      return object;
+    });
+  }
+
+  /**
+   * Saves all the objects in one transaction. The inserts are sent in JDBC batches (<tt>hibernate.jdbc.batch_size</tt> in the Hibernate
+   * configuration), and the session is flushed and cleared after every batch, so a long list does not pile up in the session cache.
+   *
+   * @return the given instances, with their generated ids
+   */
+  public <T> List<T> saveAll(Collection<T> objects) {
+    return writeInBatches("saveAll", objects, (session, object) -> {
+      session.save(object);
+      return object;
+    });
+  }
+
+  /**
+   * Merges all the objects in one transaction, in JDBC batches (see {@link #saveAll}).
+   *
+   * @return the merged copies of the objects, in the same order
+   */
+  @SuppressWarnings("unchecked")
+  public <T> List<T> mergeAll(Collection<T> objects) {
+    return writeInBatches("mergeAll", objects, (session, object) -> (T) session.merge(object));
+  }
+
+  /**
+   * Deletes every entity matching the restrictions in one transaction, in JDBC batches (see {@link #saveAll}). The entities are loaded and
+   * deleted one by one (not with a HQL bulk delete), so the delete cascades the same way as {@link #delete}.
+   *
+   * @return the number of deleted entities
+   */
+  @SuppressWarnings("unchecked")
+  public <T> int deleteWhere(Class<T> queryClass, Map<String, Object> restrictionMap) {
+    Transaction transaction = null;
+    int deleteCount = 0;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      //NOTE session.createCriteria will be removed in Hibernate 6
+      //noinspection deprecation
+      Criteria criteria = session.createCriteria(queryClass);
+      if (restrictionMap != null && !restrictionMap.isEmpty()) {
+        for (Entry<String, Object> entry : restrictionMap.entrySet()) {
+          criteria.add(Restrictions.eq(entry.getKey(), entry.getValue()));
+        }
+      }
+      for (T object : (List<T>) criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY).list()) {
+        session.delete(object);
+        if (++deleteCount % JDBC_BATCH_SIZE == 0) {
+          session.flush();
+          session.clear();
+        }
+      }
+      transaction.commit();
+    } catch (PersistenceException e) {
+      if (transaction != null) {
+        transaction.rollback();
+      }
+
+      Throwable cause = e.getCause();
+      if (cause instanceof ConstraintViolationException && cause.getMessage().equals("could not execute statement")) {
+        log.error("DatabaseManager:deleteWhere throws ConstraintViolationException", e);
+        throw new ArrowheadException(
+            "There is a reference to this object in another table, which prevents the delete operation. (" + queryClass.getSimpleName() + ")",
+            Status.BAD_REQUEST.getStatusCode(), e);
+      } else {
+        Throwable rootCause = Utility.getExceptionRootCause(e);
+        log.error("Unknown exception during database deleteWhere: " + rootCause.getClass() + " - " + rootCause.getMessage(), e);
+        throw new ArrowheadException(
+            "Unknown exception during database deleteWhere: " + rootCause.getClass() + " - " + rootCause.getMessage(), e);
+      }
+    } catch (Exception e) {
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      log.error("Unknown exception during database deleteWhere", e);
+      throw e;
+    }
+
+    return deleteCount;
+  }
+
+  private <T, R> List<R> writeInBatches(String operation, Collection<T> objects, BiFunction<Session, T, R> write) {
+    List<R> results = new ArrayList<>(objects.size());
+    Transaction transaction = null;
+
+    try (Session session = getSessionFactory().openSession()) {
+      transaction = session.beginTransaction();
+      for (T object : objects) {
+        results.add(write.apply(session, object));
+        if (results.size() % JDBC_BATCH_SIZE == 0) {
+          session.flush();
+          session.clear();
+        }
+      }
+      transaction.commit();
+    } catch (PersistenceException e) {
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof ConstraintViolationException && cause.getMessage().equals("could not execute statement")) {
+        log.error("DatabaseManager:" + operation + " throws DuplicateEntryException", e);
+        throw new DuplicateEntryException(
+            "There is already an entry in the database with these parameters. Please check the unique fields of the saved objects.",
+            Status.BAD_REQUEST.getStatusCode(), e);
+      } else {
+        Throwable rootCause = Utility.getExceptionRootCause(e);
+        log.error("Unknown exception during database " + operation + ": " + rootCause.getClass() + " - " + rootCause.getMessage(), e);
+        throw new ArrowheadException(
+            "Unknown exception during database " + operation + ": " + rootCause.getClass() + " - " + rootCause.getMessage(), e);
+      }
+    } catch (Exception e) {
+      if (transaction != null) {
+        transaction.rollback();
+      }
+      log.error("Unknown exception during database " + operation, e);
+      throw e;
+    }
+
+    return results;
+  }
+
   @SafeVarargs
   public final <T> void delete(T... objects) {
     Transaction transaction = null;
@@ -341,6 +718,18 @@ public class DatabaseManager {
     }
   }
 
+  private static void bindParameters(Query<?> query, Map<String, Object> parameters) {
+    if (parameters != null) {
+      for (Entry<String, Object> entry : parameters.entrySet()) {
+        if (entry.getValue() instanceof Collection) {
+          query.setParameterList(entry.getKey(), (Collection<?>) entry.getValue());
+        } else {
+          query.setParameter(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
   // NOTE this only works well on tables which dont have any connection to any other tables (HQL does not do cascading)
   @SuppressWarnings("unused")
   public void deleteAll(String tableName) {
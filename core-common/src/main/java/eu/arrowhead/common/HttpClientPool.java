@@ -0,0 +1,196 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common;
+
+import eu.arrowhead.common.exception.UnavailableServerException;
+import eu.arrowhead.common.json.JacksonJsonProviderAtRest;
+import eu.arrowhead.common.misc.TypeSafeProperties;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+/**
+ * Keeps one Jersey {@link Client} per {@link SSLContext} (plus one for insecure requests), instead of building a new client for every request.
+ * Reusing the client means reusing its SSL socket factory, which makes the persistent (keep-alive) connections of the JDK HTTP connector and the
+ * TLS session cache of the context usable across requests, so subsequent calls to the same host skip the TCP and TLS handshakes.
+ * <p>
+ * The number of concurrent requests per (host, SSLContext) route is limited, requests above the limit wait for a free slot (up to a timeout).
+ * A slot is held until the response entity has been read (the connection only returns to the keep-alive cache then). Client hit/miss and pool
+ * wait statistics are available through {@link #getMetrics()}, and are part of the <i>eventhandler/mgmt/delivery</i> metrics.
+ * <p>
+ * The async requests of a client are executed by a fixed size thread pool (<i>http_async_threads</i>). The JDK connector is blocking, so
+ * every async request in flight occupies one of these threads; requests above the pool size queue up until a thread becomes free.
+ */
+public final class HttpClientPool {
+
+  private static final Logger log = Logger.getLogger(HttpClientPool.class.getName());
+  private static final HostnameVerifier allHostsValid = (hostname, session) -> {
+    // Decide whether to allow the connection...
+    return true;
+  };
+  // Key of the insecure client in the client map (ConcurrentHashMap does not allow null keys)
+  private static final Object NO_SSL = new Object();
+
+  private static final Map<Object, Client> clients = new ConcurrentHashMap<>();
+  private static final Map<List<Object>, Semaphore> routes = new ConcurrentHashMap<>();
+
+  private static final LongAdder clientHits = new LongAdder();
+  private static final LongAdder clientMisses = new LongAdder();
+  private static final LongAdder poolWaits = new LongAdder();
+  private static final LongAdder poolWaitTime = new LongAdder();
+  private static final LongAdder poolTimeouts = new LongAdder();
+
+  // Enforces the timeouts of the async requests (the tasks only complete futures, so one thread is enough)
+  private static final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "http-client-timeout");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private static volatile int connectTimeout = 30000;
+  private static volatile int readTimeout = 30000;
+  private static volatile int maxConnectionsPerRoute = 20;
+  private static volatile long poolWaitTimeout = 30000L;
+  private static volatile int asyncThreads = 20;
+
+  private HttpClientPool() throws AssertionError {
+    throw new AssertionError("HttpClientPool is a non-instantiable class");
+  }
+
+  /**
+   * Reads the client settings from the config file of the Core System. Has to be called at startup, before the first request is sent.
+   */
+  public static synchronized void configure(TypeSafeProperties props) {
+    connectTimeout = props.getIntProperty("http_connect_timeout", 30000);
+    readTimeout = props.getIntProperty("http_read_timeout", 30000);
+    maxConnectionsPerRoute = props.getIntProperty("http_max_connections_per_route", 20);
+    poolWaitTimeout = props.getIntProperty("http_pool_wait_timeout", 30000);
+    asyncThreads = props.getIntProperty("http_async_threads", 20);
+
+    // The JDK keep-alive cache reads these once, when the first HTTP connection is made
+    System.setProperty("http.keepAlive", "true");
+    if (System.getProperty("http.maxConnections") == null) {
+      System.setProperty("http.maxConnections", String.valueOf(maxConnectionsPerRoute));
+    }
+
+    // Clients and routes created with the previous settings are dropped
+    clients.values().forEach(Client::close);
+    clients.clear();
+    routes.clear();
+  }
+
+  /**
+   * Returns the shared client belonging to the given SSLContext (or the insecure client, if the context is null), creating it on first use.
+   */
+  static Client getClient(SSLContext context) {
+    Object key = context == null ? NO_SSL : context;
+    Client client = clients.get(key);
+    if (client != null) {
+      clientHits.increment();
+      return client;
+    }
+    return clients.computeIfAbsent(key, k -> {
+      clientMisses.increment();
+      return createClient(context);
+    });
+  }
+
+  /**
+   * Takes a connection slot of the (host, SSLContext) route of the given URI. The returned semaphore has to be released after the request.
+   *
+   * @throws UnavailableServerException if no slot became free in time
+   */
+  static Semaphore acquire(URI uri, SSLContext context) {
+    List<Object> route = Arrays.asList(uri.getScheme(), uri.getHost(), uri.getPort(), context == null ? NO_SSL : context);
+    Semaphore semaphore = routes.computeIfAbsent(route, k -> new Semaphore(maxConnectionsPerRoute, true));
+    if (semaphore.tryAcquire()) {
+      return semaphore;
+    }
+
+    poolWaits.increment();
+    long start = System.nanoTime();
+    boolean acquired;
+    try {
+      acquired = semaphore.tryAcquire(poolWaitTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      acquired = false;
+    } finally {
+      poolWaitTime.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    if (!acquired) {
+      poolTimeouts.increment();
+      log.error("No free connection to " + uri.getHost() + ":" + uri.getPort() + " within " + poolWaitTimeout + " ms");
+      throw new UnavailableServerException("No free connection to " + uri.getHost() + ":" + uri.getPort() + " within " + poolWaitTimeout + " ms",
+                                           Status.SERVICE_UNAVAILABLE.getStatusCode());
+    }
+    return semaphore;
+  }
+
+  /**
+   * Default overall timeout of an async request: the sum of the connect and read timeouts.
+   */
+  static long getRequestTimeout() {
+    return (long) connectTimeout + readTimeout;
+  }
+
+  static ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+    return timeoutScheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the client cache hits/misses, the number of requests which had to wait for a free connection slot, their total waiting time (in
+   * milliseconds), the number of requests which gave up waiting, and the number of clients and routes in use.
+   */
+  public static Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>();
+    metrics.put("clientHits", clientHits.sum());
+    metrics.put("clientMisses", clientMisses.sum());
+    metrics.put("poolWaits", poolWaits.sum());
+    metrics.put("poolWaitTimeMillis", poolWaitTime.sum());
+    metrics.put("poolTimeouts", poolTimeouts.sum());
+    metrics.put("clients", (long) clients.size());
+    metrics.put("routes", (long) routes.size());
+    return metrics;
+  }
+
+  private static Client createClient(SSLContext context) {
+    ClientConfig configuration = new ClientConfig();
+    configuration.property(ClientProperties.CONNECT_TIMEOUT, connectTimeout);
+    configuration.property(ClientProperties.READ_TIMEOUT, readTimeout);
+    // The default async executor of Jersey is unbounded, and the JDK connector blocks a thread for every async request in flight
+    configuration.property(ClientProperties.ASYNC_THREADPOOL_SIZE, asyncThreads);
+
+    Client client;
+    if (context != null) {
+      client = ClientBuilder.newBuilder().sslContext(context).withConfig(configuration).hostnameVerifier(allHostsValid).build();
+    } else {
+      client = ClientBuilder.newClient(configuration);
+    }
+    client.register(JacksonJsonProviderAtRest.class);
+    return client;
+  }
+
+}
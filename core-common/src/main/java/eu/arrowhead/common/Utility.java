@@ -45,14 +45,19 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Optional;
 import java.util.ServiceConfigurationError;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
@@ -60,31 +65,29 @@ import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
 import javax.ws.rs.NotAllowedException;
 import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.AsyncInvoker;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation.Builder;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.Response.Status.Family;
 import javax.ws.rs.core.UriBuilder;
 import org.apache.log4j.Logger;
-import org.glassfish.jersey.client.ClientConfig;
-import org.glassfish.jersey.client.ClientProperties;
 
 public final class Utility {
 
-  private static Client client = createClient(null);
-  private static Client sslClient;
+  /**
+   * Response header of the paged listings, with the <i>afterId</i> of the next page. Only present if the returned page is full.
+   */
+  public static final String NEXT_AFTER_ID_HEADER = "X-Next-After-Id";
+
   private static SSLContext sslContext;
   private static String SR_QUERY_URI;
 
   private static final ObjectMapper mapper = JacksonJsonProviderAtRest.getMapper();
   private static final Logger log = Logger.getLogger(Utility.class.getName());
-  private static final HostnameVerifier allHostsValid = (hostname, session) -> {
-    // Decide whether to allow the connection...
-    return true;
-  };
 
   private static final String DEFAULT_CONF = "default.conf";
   private static final String DEFAULT_CONF_DIR = "config" + File.separator + "default.conf";
@@ -95,25 +98,8 @@ public final class Utility {
     throw new AssertionError("Arrowhead Common:Utility is a non-instantiable class");
   }
 
-  private static Client createClient(SSLContext context) {
-    ClientConfig configuration = new ClientConfig();
-    configuration.property(ClientProperties.CONNECT_TIMEOUT, 30000);
-    configuration.property(ClientProperties.READ_TIMEOUT, 30000);
-
-    Client client;
-    if (context != null) {
-      client = ClientBuilder.newBuilder().sslContext(context).withConfig(configuration).hostnameVerifier(allHostsValid)
-                            .build();
-    } else {
-      client = ClientBuilder.newClient(configuration);
-    }
-    client.register(JacksonJsonProviderAtRest.class);
-    return client;
-  }
-
   public static void setSSLContext(SSLContext context) {
     sslContext = context;
-    sslClient = createClient(sslContext);
   }
 
   public static void setServiceRegistryUri(String uri) {
@@ -126,29 +112,14 @@ public final class Utility {
   public static <T> Response sendRequest(String uri, String method, T payload, SSLContext givenContext) {
     log.info("Sending " + method + " request to: " + uri);
 
-    boolean isSecure = false;
-    if (uri == null) {
-      log.error("sendRequest received null uri");
-      throw new NullPointerException(
-          "send (HTTP) request method received null URL. This most likely means the invoking Core System could not "
-              + "fetch the service"
-              + " of another Core System from the Service Registry!");
-    }
-    if (uri.startsWith("https")) {
-      isSecure = true;
-    }
+    // Clients are pooled per SSLContext, so connections (and TLS sessions) are reused between requests to the same host
+    SSLContext usedContext = getUsedContext(uri, givenContext);
+    Client usedClient = HttpClientPool.getClient(usedContext);
 
-    if (isSecure && sslClient == null) {
-      throw new AuthException(
-          "SSL Context is not set, but secure request sending was invoked. An insecure module can not send requests "
-              + "to secure modules.",
-          Status.UNAUTHORIZED.getStatusCode());
-    }
-    Client usedClient = isSecure ? givenContext != null ? createClient(givenContext) : sslClient : client;
-
-    Builder request = usedClient.target(UriBuilder.fromUri(uri).build()).request()
-                                .header("Content-type", "application/json");
+    URI target = UriBuilder.fromUri(uri).build();
+    Builder request = usedClient.target(target).request().header("Content-type", "application/json");
     Response response; // will not be null after the switch-case
+    Semaphore connectionSlot = HttpClientPool.acquire(target, usedContext);
     try {
       switch (method) {
         case "GET":
@@ -166,16 +137,12 @@ public final class Utility {
         default:
           throw new NotAllowedException("Invalid method type was given to the Utility.sendRequest() method");
       }
+      // The connection only goes back to the keep-alive cache after the entity was read, so the slot is held until then
+      response.bufferEntity();
     } catch (ProcessingException e) {
-      if (e.getCause().getMessage().contains("PKIX path")) {
-        log.error("The system at " + uri + " is not part of the same certificate chain of trust!");
-        throw new AuthException("The system at " + uri + " is not part of the same certificate chain of trust!",
-                                Status.UNAUTHORIZED.getStatusCode(), e);
-      } else {
-        log.error("UnavailableServerException occurred at " + uri, e);
-        throw new UnavailableServerException("Could not get any response from: " + uri,
-                                             Status.SERVICE_UNAVAILABLE.getStatusCode(), e);
-      }
+      throw getProcessingException(e, uri);
+    } finally {
+      connectionSlot.release();
     }
 
     // If the response status code does not start with 2 the request was not successful
@@ -190,7 +157,135 @@ public final class Utility {
     return sendRequest(uri, method, payload, null);
   }
 
-  //TODO option for async request sending which can be used by the event handler
+  /**
+   * Asynchronous version of {@link #sendRequest(String, String, Object, SSLContext)}: the request is executed by the async invoker of the
+   * (pooled) Jersey client, so the calling thread is not tied up while the request is in flight. The returned future completes with the
+   * response, or exceptionally with the same exceptions <tt>sendRequest</tt> would throw (including the error responses mapped by
+   * <tt>handleException</tt>). If no response arrives within <tt>timeout</tt> milliseconds, the future completes with an
+   * {@link UnavailableServerException} (504). Cancelling the returned future cancels the underlying request too, and a response arriving after
+   * the timeout or the cancellation is closed right away.
+   * <p>
+   * Note: the calling thread only waits if the (host, SSLContext) route already has the maximum number of requests in flight. The request is
+   * not non-blocking I/O: the JDK connector blocks an async executor thread until the response arrives. These threads are bounded by the
+   * <i>http_async_threads</i> setting of {@link HttpClientPool}, so at most that many async requests are in flight at the same time (across
+   * all hosts), the rest wait in the queue of the executor (their timeout is already running).
+   */
+  public static <T> CompletableFuture<Response> sendRequestAsync(String uri, String method, T payload, SSLContext givenContext, long timeout) {
+    log.info("Sending async " + method + " request to: " + uri);
+
+    SSLContext usedContext = getUsedContext(uri, givenContext);
+    Client usedClient = HttpClientPool.getClient(usedContext);
+    if (!Arrays.asList("GET", "POST", "PUT", "DELETE").contains(method)) {
+      throw new NotAllowedException("Invalid method type was given to the Utility.sendRequestAsync() method");
+    }
+
+    URI target = UriBuilder.fromUri(uri).build();
+    AsyncInvoker request = usedClient.target(target).request().header("Content-type", "application/json").async();
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+      @Override
+      public void completed(Response response) {
+        // Arrived after the timeout (or the cancellation), nobody is going to read or close it
+        if (result.isDone()) {
+          response.close();
+          return;
+        }
+        try {
+          // Read the entity before the connection slot is released (see sendRequest)
+          response.bufferEntity();
+          // If the response status code does not start with 2 the request was not successful
+          if (!(response.getStatusInfo().getFamily() == Family.SUCCESSFUL)) {
+            handleException(response, uri);
+          }
+          if (!result.complete(response)) {
+            response.close();
+          }
+        } catch (ProcessingException e) {
+          response.close();
+          result.completeExceptionally(getProcessingException(e, uri));
+        } catch (RuntimeException e) {
+          response.close();
+          result.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void failed(Throwable throwable) {
+        if (throwable instanceof ProcessingException) {
+          result.completeExceptionally(getProcessingException((ProcessingException) throwable, uri));
+        } else {
+          result.completeExceptionally(throwable);
+        }
+      }
+    };
+
+    Semaphore connectionSlot = HttpClientPool.acquire(target, usedContext);
+    Future<Response> requestFuture;
+    try {
+      requestFuture = method.equals("POST") || method.equals("PUT") ? request.method(method, Entity.json(payload), callback)
+                                                                    : request.method(method, callback);
+    } catch (RuntimeException e) {
+      connectionSlot.release();
+      throw e;
+    }
+
+    ScheduledFuture<?> timeoutTask = HttpClientPool.schedule(() -> {
+      log.error("Async " + method + " request to " + uri + " timed out after " + timeout + " ms");
+      result.completeExceptionally(
+          new UnavailableServerException("No response from " + uri + " within " + timeout + " ms", Status.GATEWAY_TIMEOUT.getStatusCode()));
+    }, timeout);
+    result.whenComplete((response, throwable) -> {
+      connectionSlot.release();
+      timeoutTask.cancel(false);
+      // Timed out or cancelled by the caller: the request itself has to be stopped as well
+      if (throwable != null) {
+        requestFuture.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  public static <T> CompletableFuture<Response> sendRequestAsync(String uri, String method, T payload, SSLContext givenContext) {
+    return sendRequestAsync(uri, method, payload, givenContext, HttpClientPool.getRequestTimeout());
+  }
+
+  public static <T> CompletableFuture<Response> sendRequestAsync(String uri, String method, T payload) {
+    return sendRequestAsync(uri, method, payload, null);
+  }
+
+  private static SSLContext getUsedContext(String uri, SSLContext givenContext) {
+    boolean isSecure = false;
+    if (uri == null) {
+      log.error("sendRequest received null uri");
+      throw new NullPointerException(
+          "send (HTTP) request method received null URL. This most likely means the invoking Core System could not "
+              + "fetch the service"
+              + " of another Core System from the Service Registry!");
+    }
+    if (uri.startsWith("https")) {
+      isSecure = true;
+    }
+
+    if (isSecure && sslContext == null) {
+      throw new AuthException(
+          "SSL Context is not set, but secure request sending was invoked. An insecure module can not send requests "
+              + "to secure modules.",
+          Status.UNAUTHORIZED.getStatusCode());
+    }
+    return isSecure ? givenContext != null ? givenContext : sslContext : null;
+  }
+
+  private static ArrowheadException getProcessingException(ProcessingException e, String uri) {
+    if (e.getCause() != null && e.getCause().getMessage() != null && e.getCause().getMessage().contains("PKIX path")) {
+      log.error("The system at " + uri + " is not part of the same certificate chain of trust!");
+      return new AuthException("The system at " + uri + " is not part of the same certificate chain of trust!",
+                               Status.UNAUTHORIZED.getStatusCode(), e);
+    } else {
+      log.error("UnavailableServerException occurred at " + uri, e);
+      return new UnavailableServerException("Could not get any response from: " + uri,
+                                            Status.SERVICE_UNAVAILABLE.getStatusCode(), e);
+    }
+  }
 
   private static void handleException(Response response, String uri) {
     //The response body has to be extracted before the stream closes
@@ -556,6 +651,17 @@ public final class Utility {
     return addresses.get(0).getHostAddress();
   }
 
+  /**
+   * Returns the <i>afterId</i> of the page following the given one (the greatest id of the page), or null if the page is not full, so there are no
+   * more entities to return. To be used as the value of the {@link #NEXT_AFTER_ID_HEADER} header.
+   */
+  public static <T> Long getNextAfterId(List<T> page, int pageLimit, Function<? super T, Long> idGetter) {
+    if (page.isEmpty() || page.size() < pageLimit) {
+      return null;
+    }
+    return page.stream().map(idGetter).max(Long::compare).orElse(null);
+  }
+
   public static <T> boolean isBeanValid(T bean) {
     ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
     Validator validator = factory.getValidator();
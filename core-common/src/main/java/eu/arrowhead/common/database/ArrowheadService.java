@@ -46,7 +46,7 @@ import org.hibernate.validator.constraints.NotBlank;
 public class ArrowheadService {
 
   @Id
-  @GenericGenerator(name = "table_generator", strategy = "org.hibernate.id.enhanced.TableGenerator")
+  @GenericGenerator(name = "table_generator", strategy = "eu.arrowhead.common.database.PooledTableGenerator")
   @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "table_generator")
   private Long id;
 
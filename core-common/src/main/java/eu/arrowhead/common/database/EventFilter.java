@@ -32,6 +32,8 @@ import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import org.hibernate.annotations.GenericGenerator;
@@ -46,7 +48,7 @@ import org.hibernate.validator.constraints.NotBlank;
 public class EventFilter {
 
   @Id
-  @GenericGenerator(name = "table_generator", strategy = "org.hibernate.id.enhanced.TableGenerator")
+  @GenericGenerator(name = "table_generator", strategy = "eu.arrowhead.common.database.PooledTableGenerator")
   @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "table_generator")
   private Long id;
 
@@ -89,6 +91,18 @@ public class EventFilter {
   @Type(type = "yes_no")
   private Boolean matchMetadata = false;
 
+  // Optional batching: the matching events are collected for at most maxBatchLinger milliseconds (or until maxBatchSize events are collected),
+  // and sent to the notifyUri as one JSON array. Null (or 1) maxBatchSize means every event is sent separately.
+  @Column(name = "max_batch_size")
+  @Min(value = 1, message = "Max batch size can not be less than 1")
+  @Max(value = 1000, message = "Max batch size can not be greater than 1000")
+  private Integer maxBatchSize;
+
+  @Column(name = "max_batch_linger")
+  @Min(value = 0, message = "Max batch linger time can not be negative")
+  @Max(value = 60000, message = "Max batch linger time can not be greater than 60000 ms")
+  private Integer maxBatchLinger;
+
   public EventFilter() {
   }
 
@@ -189,6 +203,22 @@ public class EventFilter {
     this.matchMetadata = matchMetadata;
   }
 
+  public Integer getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(Integer maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public Integer getMaxBatchLinger() {
+    return maxBatchLinger;
+  }
+
+  public void setMaxBatchLinger(Integer maxBatchLinger) {
+    this.maxBatchLinger = maxBatchLinger;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -219,5 +249,7 @@ public class EventFilter {
     this.filterMetadata = other.filterMetadata;
     this.notifyUri = other.notifyUri;
     this.matchMetadata = other.matchMetadata;
+    this.maxBatchSize = other.maxBatchSize;
+    this.maxBatchLinger = other.maxBatchLinger;
   }
 }
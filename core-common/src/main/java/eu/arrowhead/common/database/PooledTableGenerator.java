@@ -0,0 +1,35 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.database;
+
+import java.util.Properties;
+import org.hibernate.MappingException;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * {@link TableGenerator} which reserves a block of ids with one update of the generator table, instead of updating the table for every insert.
+ * <p>
+ * The <i>pooled-lo</i> optimizer stores the first id of the next block in the table, the same way as the plain table generator stores the next
+ * id, so existing databases keep working, and the core systems sharing the database reserve separate blocks. The unused ids of a block are lost
+ * when the system stops, which leaves gaps in the ids.
+ */
+public class PooledTableGenerator extends TableGenerator {
+
+  private static final String INCREMENT_SIZE = "50";
+  private static final String OPTIMIZER = "pooled-lo";
+
+  @Override
+  public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+    params.putIfAbsent(INCREMENT_PARAM, INCREMENT_SIZE);
+    params.putIfAbsent(OPT_PARAM, OPTIMIZER);
+    super.configure(type, params, serviceRegistry);
+  }
+
+}
@@ -11,17 +11,22 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.MoreObjects;
 import eu.arrowhead.common.json.constraint.LDTInFuture;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import javax.persistence.CascadeType;
+import javax.persistence.CollectionTable;
 import javax.persistence.Column;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 import javax.validation.Valid;
@@ -37,7 +42,7 @@ import org.hibernate.annotations.Type;
 public class ServiceRegistryEntry {
 
   @Id
-  @GenericGenerator(name = "table_generator", strategy = "org.hibernate.id.enhanced.TableGenerator")
+  @GenericGenerator(name = "table_generator", strategy = "eu.arrowhead.common.database.PooledTableGenerator")
   @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "table_generator")
   private Long id;
 
@@ -68,9 +73,20 @@ public class ServiceRegistryEntry {
 
   private Integer version = 1;
 
-  //Takes the providedService metadata map
+  //Takes the providedService metadata map, stored as key-value rows, so metadata searches can be done by the database
   @JsonIgnore
-  private String metadata;
+  @ElementCollection(fetch = FetchType.EAGER)
+  @MapKeyColumn(name = "metadata_key")
+  @Column(name = "metadata_value")
+  @CollectionTable(name = "service_registry_metadata", joinColumns = @JoinColumn(name = "service_registry_id"),
+                   indexes = {@Index(columnList = "metadata_key, metadata_value")})
+  @OnDelete(action = OnDeleteAction.CASCADE)
+  private Map<String, String> metadata = new HashMap<>();
+
+  //The "key=value,key=value" metadata string of the entries saved before the metadata table was introduced
+  @JsonIgnore
+  @Column(name = "metadata")
+  private String legacyMetadata;
 
   public ServiceRegistryEntry() {
   }
@@ -92,7 +108,7 @@ public class ServiceRegistryEntry {
   }
 
   public ServiceRegistryEntry(ArrowheadService providedService, ArrowheadSystem provider, String serviceURI, Boolean udp, LocalDateTime endOfValidity,
-                              Integer version, String metadata) {
+                              Integer version, Map<String, String> metadata) {
     this.providedService = providedService;
     this.provider = provider;
     this.serviceURI = serviceURI;
@@ -184,27 +200,42 @@ public class ServiceRegistryEntry {
   }
 
   public void toDatabase() {
-    if (providedService.getServiceMetadata() != null && !providedService.getServiceMetadata().isEmpty()) {
-      StringBuilder sb = new StringBuilder();
-      for (Map.Entry<String, String> entry : providedService.getServiceMetadata().entrySet()) {
-        sb.append(entry.getKey()).append("=").append(entry.getValue()).append(",");
-      }
-      metadata = sb.toString().substring(0, sb.length() - 1);
+    metadata = new HashMap<>();
+    if (providedService.getServiceMetadata() != null) {
+      metadata.putAll(providedService.getServiceMetadata());
     }
+    legacyMetadata = null;
   }
 
   public void fromDatabase(boolean removeId) {
     if (removeId) {
       providedService.setId(null);
     }
-    if (metadata != null && metadata.trim().length() > 0) {
-      String[] parts = metadata.split(",");
+    migrateLegacyMetadata();
+    if (metadata != null && !metadata.isEmpty()) {
       providedService.getServiceMetadata().clear();
-      for (String part : parts) {
+      providedService.getServiceMetadata().putAll(metadata);
+    }
+  }
+
+  /**
+   * Moves the metadata string of an entry saved before the metadata table was introduced into the metadata map.
+   *
+   * @return true if the entry had legacy metadata, and has to be saved again
+   */
+  public boolean migrateLegacyMetadata() {
+    if (legacyMetadata == null) {
+      return false;
+    }
+    if (legacyMetadata.trim().length() > 0 && (metadata == null || metadata.isEmpty())) {
+      metadata = new HashMap<>();
+      for (String part : legacyMetadata.split(",")) {
         String[] pair = part.split("=");
-        providedService.getServiceMetadata().put(pair[0], pair[1]);
+        metadata.put(pair[0], pair[1]);
       }
     }
+    legacyMetadata = null;
+    return true;
   }
 
   public void updateEntryWith(ServiceRegistryEntry other) {
@@ -214,7 +245,8 @@ public class ServiceRegistryEntry {
     this.udp = other.udp;
     this.endOfValidity = other.endOfValidity;
     this.version = other.version;
-    this.metadata = other.metadata;
+    this.metadata = other.metadata == null ? new HashMap<>() : new HashMap<>(other.metadata);
+    this.legacyMetadata = other.legacyMetadata;
   }
 
 }
\ No newline at end of file
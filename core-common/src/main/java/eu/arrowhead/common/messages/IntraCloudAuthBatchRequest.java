@@ -0,0 +1,40 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Valid;
+import org.hibernate.validator.constraints.NotEmpty;
+
+/**
+ * Contains multiple intra-cloud authorization checks (each with its own consumer, service and provider set), so they can be evaluated by the
+ * Authorization Core System in one round trip.
+ */
+public class IntraCloudAuthBatchRequest {
+
+  @Valid
+  @NotEmpty
+  private List<IntraCloudAuthRequest> requests = new ArrayList<>();
+
+  public IntraCloudAuthBatchRequest() {
+  }
+
+  public IntraCloudAuthBatchRequest(List<IntraCloudAuthRequest> requests) {
+    this.requests = requests;
+  }
+
+  public List<IntraCloudAuthRequest> getRequests() {
+    return requests;
+  }
+
+  public void setRequests(List<IntraCloudAuthRequest> requests) {
+    this.requests = requests;
+  }
+
+}
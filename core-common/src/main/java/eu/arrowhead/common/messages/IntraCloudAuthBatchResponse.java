@@ -0,0 +1,37 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Valid;
+
+/**
+ * Answer to an {@link IntraCloudAuthBatchRequest}. The n-th response belongs to the n-th request of the batch.
+ */
+public class IntraCloudAuthBatchResponse {
+
+  @Valid
+  private List<IntraCloudAuthResponse> responses = new ArrayList<>();
+
+  public IntraCloudAuthBatchResponse() {
+  }
+
+  public IntraCloudAuthBatchResponse(List<IntraCloudAuthResponse> responses) {
+    this.responses = responses;
+  }
+
+  public List<IntraCloudAuthResponse> getResponses() {
+    return responses;
+  }
+
+  public void setResponses(List<IntraCloudAuthResponse> responses) {
+    this.responses = responses;
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import eu.arrowhead.common.database.ArrowheadSystem;
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * Ordered list of events published by one source in one request. The delivery report sent to the <tt>deliveryCompleteUri</tt> is a list with the
+ * results of every event, in the same order.
+ */
+public class PublishEvents {
+
+  @Valid
+  @NotNull
+  private ArrowheadSystem source;
+  @Valid
+  @NotNull
+  @Size(min = 1, message = "The list of events can not be empty")
+  private List<Event> events = new ArrayList<>();
+  private String deliveryCompleteUri;
+
+  public PublishEvents() {
+  }
+
+  public PublishEvents(ArrowheadSystem source, List<Event> events, String deliveryCompleteUri) {
+    this.source = source;
+    this.events = events;
+    this.deliveryCompleteUri = deliveryCompleteUri;
+  }
+
+  public ArrowheadSystem getSource() {
+    return source;
+  }
+
+  public void setSource(ArrowheadSystem source) {
+    this.source = source;
+  }
+
+  public List<Event> getEvents() {
+    return events;
+  }
+
+  public void setEvents(List<Event> events) {
+    this.events = events;
+  }
+
+  public String getDeliveryCompleteUri() {
+    return deliveryCompleteUri;
+  }
+
+  public void setDeliveryCompleteUri(String deliveryCompleteUri) {
+    this.deliveryCompleteUri = deliveryCompleteUri;
+  }
+
+}
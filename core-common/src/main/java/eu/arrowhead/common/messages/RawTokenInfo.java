@@ -12,6 +12,8 @@ public class RawTokenInfo {
   private String s;
   private String c;
   private Long e;
+  //Only used in compact tokens, where the token is not encrypted with the public key of the provider
+  private String p;
 
   public RawTokenInfo() {
   }
@@ -40,9 +42,17 @@ public class RawTokenInfo {
     this.e = e;
   }
 
+  public String getP() {
+    return p;
+  }
+
+  public void setP(String p) {
+    this.p = p;
+  }
+
   @Override
   public String toString() {
-    return "ClassPojo [s = " + s + ", c = " + c + ", e = " + e + "]";
+    return "ClassPojo [s = " + s + ", c = " + c + ", e = " + e + ", p = " + p + "]";
   }
 
 }
\ No newline at end of file
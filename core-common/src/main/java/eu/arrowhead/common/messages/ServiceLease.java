@@ -0,0 +1,44 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.time.LocalDateTime;
+
+/**
+ * Answer of the Service Registry to a lease renewal: the id of the renewed Service Registry entry and its new end of validity.
+ */
+public class ServiceLease {
+
+  private Long id;
+  private LocalDateTime endOfValidity;
+
+  public ServiceLease() {
+  }
+
+  public ServiceLease(Long id, LocalDateTime endOfValidity) {
+    this.id = id;
+    this.endOfValidity = endOfValidity;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(Long id) {
+    this.id = id;
+  }
+
+  public LocalDateTime getEndOfValidity() {
+    return endOfValidity;
+  }
+
+  public void setEndOfValidity(LocalDateTime endOfValidity) {
+    this.endOfValidity = endOfValidity;
+  }
+
+}
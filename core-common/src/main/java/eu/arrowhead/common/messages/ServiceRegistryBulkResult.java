@@ -0,0 +1,35 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answer of the Service Registry to a bulk register or remove request, with one result per requested entry (in request order).
+ */
+public class ServiceRegistryBulkResult {
+
+  private List<ServiceRegistryEntryResult> results = new ArrayList<>();
+
+  public ServiceRegistryBulkResult() {
+  }
+
+  public ServiceRegistryBulkResult(List<ServiceRegistryEntryResult> results) {
+    this.results = results;
+  }
+
+  public List<ServiceRegistryEntryResult> getResults() {
+    return results;
+  }
+
+  public void setResults(List<ServiceRegistryEntryResult> results) {
+    this.results = results;
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.time.LocalDateTime;
+
+/**
+ * One record of the Service Registry change log: the providers of the given service definition were changed (registered, removed, updated or
+ * expired) at the given revision. The current providers can be fetched with a service query.
+ */
+public class ServiceRegistryChange {
+
+  private long revision;
+  private String serviceDefinition;
+  private LocalDateTime timestamp;
+
+  public ServiceRegistryChange() {
+  }
+
+  public ServiceRegistryChange(long revision, String serviceDefinition, LocalDateTime timestamp) {
+    this.revision = revision;
+    this.serviceDefinition = serviceDefinition;
+    this.timestamp = timestamp;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  public void setRevision(long revision) {
+    this.revision = revision;
+  }
+
+  public String getServiceDefinition() {
+    return serviceDefinition;
+  }
+
+  public void setServiceDefinition(String serviceDefinition) {
+    this.serviceDefinition = serviceDefinition;
+  }
+
+  public LocalDateTime getTimestamp() {
+    return timestamp;
+  }
+
+  public void setTimestamp(LocalDateTime timestamp) {
+    this.timestamp = timestamp;
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answer of the Service Registry to a change log request: the changes after the requested revision, and the latest revision of the log (to be
+ * used as the <i>since</i> parameter of the next request). The instance id changes when the Service Registry restarts, because the revisions
+ * start from 0 again.
+ */
+public class ServiceRegistryChanges {
+
+  private String instanceId;
+  private long revision;
+  private List<ServiceRegistryChange> changes = new ArrayList<>();
+
+  public ServiceRegistryChanges() {
+  }
+
+  public ServiceRegistryChanges(String instanceId, long revision, List<ServiceRegistryChange> changes) {
+    this.instanceId = instanceId;
+    this.revision = revision;
+    this.changes = changes;
+  }
+
+  public String getInstanceId() {
+    return instanceId;
+  }
+
+  public void setInstanceId(String instanceId) {
+    this.instanceId = instanceId;
+  }
+
+  public long getRevision() {
+    return revision;
+  }
+
+  public void setRevision(long revision) {
+    this.revision = revision;
+  }
+
+  public List<ServiceRegistryChange> getChanges() {
+    return changes;
+  }
+
+  public void setChanges(List<ServiceRegistryChange> changes) {
+    this.changes = changes;
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.messages;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+
+/**
+ * Outcome of one entry of a bulk Service Registry operation: the position of the entry in the request, the HTTP status code the same single
+ * operation would have returned, the saved/removed entry (or the requested one, if the operation failed) and the error message on failure.
+ */
+public class ServiceRegistryEntryResult {
+
+  private int index;
+  private int status;
+  private ServiceRegistryEntry entry;
+  @JsonInclude(Include.NON_NULL)
+  private String errorMessage;
+
+  public ServiceRegistryEntryResult() {
+  }
+
+  public ServiceRegistryEntryResult(int index, int status, ServiceRegistryEntry entry, String errorMessage) {
+    this.index = index;
+    this.status = status;
+    this.entry = entry;
+    this.errorMessage = errorMessage;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  public ServiceRegistryEntry getEntry() {
+    return entry;
+  }
+
+  public void setEntry(ServiceRegistryEntry entry) {
+    this.entry = entry;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  public void setErrorMessage(String errorMessage) {
+    this.errorMessage = errorMessage;
+  }
+
+}
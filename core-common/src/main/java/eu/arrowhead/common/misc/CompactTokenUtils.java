@@ -0,0 +1,254 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.common.misc;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import eu.arrowhead.common.Utility;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.AuthException;
+import eu.arrowhead.common.json.JacksonJsonProviderAtRest;
+import eu.arrowhead.common.messages.RawTokenInfo;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.core.Response.Status;
+
+/**
+ * Creates and verifies compact <tt>ArrowheadToken</tt>s. A compact token is a JWT-like string:
+ * <i>base64url(header).base64url(RawTokenInfo JSON).base64url(signature)</i>, signed by the private key of the Authorization Core System. Unlike
+ * the default tokens, compact tokens are not encrypted with the public key of the provider (the provider system name is part of the signed token
+ * info instead), so there is no upper limit on the token info size, and they can be verified with the public key of the Authorization alone.
+ * <p>
+ * Since the token info is only signed (and can be read by anyone), a compact token is bound to one provider and one service by its claims: the
+ * provider has to call {@link #verifyToken(String, PublicKey, String, String)} with its own system name and the requested service, otherwise a
+ * token issued for another provider could be replayed against it.
+ * <p>
+ * The signature algorithm follows the type of the Authorization key: <i>ES256</i> (SHA256withECDSA on P-256) for EC keys and <i>RS256</i>
+ * (SHA256withRSA) for RSA keys. As JWS requires, the ES256 signature is the 64 byte R||S concatenation, not the DER encoding the JDK produces.
+ * With the RSA key of the Authorization creating a compact token costs about the same as the default token (one RSA private key operation per
+ * provider), the tokens are only smaller and not limited in size. Token creation only gets significantly cheaper if the Authorization keystore is
+ * switched to an EC (P-256) key, in which case the providers verify ES256 signatures.
+ */
+public final class CompactTokenUtils {
+
+  private static final String TOKEN_TYPE = "AHT";
+  // Length of the R and S values of a P-256 (ES256) signature
+  private static final int EC_COORDINATE_LENGTH = 32;
+  private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+  private static final ObjectWriter writer = JacksonJsonProviderAtRest.getMapper().writer().without(SerializationFeature.INDENT_OUTPUT);
+
+  // Signature objects are not thread-safe, but expensive to look up, so every thread keeps its own instance per algorithm
+  private static final ThreadLocal<Map<String, Signature>> signatures = ThreadLocal.withInitial(HashMap::new);
+
+  private CompactTokenUtils() throws AssertionError {
+    throw new AssertionError("CompactTokenUtils is a non-instantiable class");
+  }
+
+  /**
+   * Creates a signed compact token from the given token info.
+   *
+   * @param tokenInfo The consumer, service, provider and expiration information to put into the token
+   * @param signingKey The private key of the Authorization Core System (RSA or EC)
+   *
+   * @return the compact token string
+   */
+  public static String createToken(RawTokenInfo tokenInfo, PrivateKey signingKey) {
+    String algorithm = getAlgorithm(signingKey);
+    String payload;
+    try {
+      payload = writer.writeValueAsString(tokenInfo);
+    } catch (Exception e) {
+      throw new ArrowheadException("RawTokenInfo serialization failed: " + e.getMessage(), Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+    }
+    String signedPart = encode("{\"alg\":\"" + algorithm + "\",\"typ\":\"" + TOKEN_TYPE + "\"}") + "." + encode(payload);
+
+    try {
+      Signature signature = getSignatureInstance(algorithm);
+      signature.initSign(signingKey);
+      signature.update(signedPart.getBytes(StandardCharsets.US_ASCII));
+      byte[] signatureBytes = signature.sign();
+      if (algorithm.equals("ES256")) {
+        signatureBytes = derToConcatenated(signatureBytes);
+      }
+      return signedPart + "." + encoder.encodeToString(signatureBytes);
+    } catch (GeneralSecurityException e) {
+      throw new ArrowheadException("Compact token signing failed: " + e.getMessage(), Status.INTERNAL_SERVER_ERROR.getStatusCode(), e);
+    }
+  }
+
+  /**
+   * Returns the (Base64url encoded) signature part of a compact token.
+   */
+  public static String getSignature(String token) {
+    return token.substring(token.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Verifies the signature, the expiration time and the provider and service claims of a compact token.
+   *
+   * @param token The compact token string received from the consumer
+   * @param authorizationKey The public key of the Authorization Core System
+   * @param expectedProvider The system name of the provider verifying the token
+   * @param expectedService The service definition of the requested service (the token contains it with or without an interface prefix)
+   *
+   * @return the token info contained by the token
+   *
+   * @throws AuthException if the token is malformed, the signature is not valid, the token has expired or it was issued for another provider or
+   *     service
+   */
+  public static RawTokenInfo verifyToken(String token, PublicKey authorizationKey, String expectedProvider, String expectedService) {
+    String[] parts = token == null ? new String[0] : token.split("\\.");
+    if (parts.length != 3) {
+      throw new AuthException("Compact token is malformed.", Status.UNAUTHORIZED.getStatusCode());
+    }
+
+    String algorithm = getAlgorithm(authorizationKey);
+    String header = new String(decode(parts[0]), StandardCharsets.UTF_8);
+    if (!header.contains("\"alg\":\"" + algorithm + "\"")) {
+      throw new AuthException("Compact token algorithm does not match the Authorization key.", Status.UNAUTHORIZED.getStatusCode());
+    }
+
+    boolean valid;
+    try {
+      Signature signature = getSignatureInstance(algorithm);
+      signature.initVerify(authorizationKey);
+      signature.update((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+      byte[] signatureBytes = decode(parts[2]);
+      valid = signature.verify(algorithm.equals("ES256") ? concatenatedToDer(signatureBytes) : signatureBytes);
+    } catch (GeneralSecurityException e) {
+      throw new AuthException("Compact token signature verification failed: " + e.getMessage(), Status.UNAUTHORIZED.getStatusCode(), e);
+    }
+    if (!valid) {
+      throw new AuthException("Compact token signature is not valid.", Status.UNAUTHORIZED.getStatusCode());
+    }
+
+    RawTokenInfo tokenInfo = Utility.fromJson(new String(decode(parts[1]), StandardCharsets.UTF_8), RawTokenInfo.class);
+    // e = 0 means a token is valid without a time limitation
+    if (tokenInfo.getE() != null && tokenInfo.getE() != 0L && tokenInfo.getE() < System.currentTimeMillis()) {
+      throw new AuthException("Compact token has expired.", Status.UNAUTHORIZED.getStatusCode());
+    }
+    if (tokenInfo.getP() == null || !tokenInfo.getP().equals(expectedProvider)) {
+      throw new AuthException("Compact token was issued for another provider.", Status.UNAUTHORIZED.getStatusCode());
+    }
+    // The service claim is "interface.serviceDefinition", or only the service definition if the service had no interfaces
+    String service = tokenInfo.getS();
+    if (service == null || expectedService == null || !(service.equals(expectedService) || service.endsWith("." + expectedService))) {
+      throw new AuthException("Compact token was issued for another service.", Status.UNAUTHORIZED.getStatusCode());
+    }
+    return tokenInfo;
+  }
+
+  private static String getAlgorithm(Key key) {
+    switch (key.getAlgorithm()) {
+      case "EC":
+        return "ES256";
+      case "RSA":
+        return "RS256";
+      default:
+        throw new ArrowheadException("Compact tokens are not supported with " + key.getAlgorithm() + " keys.",
+                                     Status.INTERNAL_SERVER_ERROR.getStatusCode());
+    }
+  }
+
+  private static Signature getSignatureInstance(String algorithm) throws NoSuchAlgorithmException {
+    Map<String, Signature> threadSignatures = signatures.get();
+    Signature signature = threadSignatures.get(algorithm);
+    if (signature == null) {
+      signature = Signature.getInstance(algorithm.equals("ES256") ? "SHA256withECDSA" : "SHA256withRSA");
+      threadSignatures.put(algorithm, signature);
+    }
+    return signature;
+  }
+
+  // Converts the DER encoded ECDSA signature of the JDK (SEQUENCE of the INTEGERs R and S) to the fixed length R||S form of JWS
+  private static byte[] derToConcatenated(byte[] der) throws SignatureException {
+    if (der.length < 8 || der[0] != 0x30) {
+      throw new SignatureException("Invalid DER encoded ECDSA signature");
+    }
+    // The sequence length takes one byte, or two if it is encoded in the long form (0x81 + length)
+    int offset = (der[1] & 0x80) != 0 ? 2 + (der[1] & 0x7f) : 2;
+    byte[] concatenated = new byte[2 * EC_COORDINATE_LENGTH];
+    for (int i = 0; i < 2; i++) {
+      if (offset + 2 > der.length || der[offset] != 0x02) {
+        throw new SignatureException("Invalid DER encoded ECDSA signature");
+      }
+      int length = der[offset + 1];
+      int start = offset + 2;
+      if (length <= 0 || start + length > der.length) {
+        throw new SignatureException("Invalid DER encoded ECDSA signature");
+      }
+      // Skip the leading zero bytes (the sign byte included), and right-align the value in its half of the result
+      int valueStart = start;
+      while (valueStart < start + length - 1 && der[valueStart] == 0) {
+        valueStart++;
+      }
+      int valueLength = start + length - valueStart;
+      if (valueLength > EC_COORDINATE_LENGTH) {
+        throw new SignatureException("ECDSA signature value is longer than " + EC_COORDINATE_LENGTH + " bytes");
+      }
+      System.arraycopy(der, valueStart, concatenated, (i + 1) * EC_COORDINATE_LENGTH - valueLength, valueLength);
+      offset = start + length;
+    }
+    return concatenated;
+  }
+
+  // Converts the R||S form of a JWS ECDSA signature back to the DER encoding the JDK verifies
+  private static byte[] concatenatedToDer(byte[] concatenated) throws SignatureException {
+    if (concatenated.length != 2 * EC_COORDINATE_LENGTH) {
+      throw new SignatureException("ES256 signature has to be " + 2 * EC_COORDINATE_LENGTH + " bytes long");
+    }
+    byte[] r = toDerInteger(Arrays.copyOfRange(concatenated, 0, EC_COORDINATE_LENGTH));
+    byte[] s = toDerInteger(Arrays.copyOfRange(concatenated, EC_COORDINATE_LENGTH, concatenated.length));
+    // At most 2 * (2 + 33) bytes, so the sequence length always fits the short form
+    byte[] der = new byte[2 + r.length + s.length];
+    der[0] = 0x30;
+    der[1] = (byte) (r.length + s.length);
+    System.arraycopy(r, 0, der, 2, r.length);
+    System.arraycopy(s, 0, der, 2 + r.length, s.length);
+    return der;
+  }
+
+  // DER INTEGER of an unsigned big-endian value: minimal length, with a zero sign byte if the highest bit is set
+  private static byte[] toDerInteger(byte[] value) {
+    int start = 0;
+    while (start < value.length - 1 && value[start] == 0) {
+      start++;
+    }
+    int signByte = (value[start] & 0x80) != 0 ? 1 : 0;
+    int length = value.length - start + signByte;
+    byte[] integer = new byte[2 + length];
+    integer[0] = 0x02;
+    integer[1] = (byte) length;
+    System.arraycopy(value, start, integer, 2 + signByte, value.length - start);
+    return integer;
+  }
+
+  private static String encode(String value) {
+    return encoder.encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static byte[] decode(String value) {
+    try {
+      return decoder.decode(value);
+    } catch (IllegalArgumentException e) {
+      throw new AuthException("Compact token is not Base64url encoded.", Status.UNAUTHORIZED.getStatusCode(), e);
+    }
+  }
+
+}
@@ -8,6 +8,7 @@
 package eu.arrowhead.common.web;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadCloud;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import java.util.ArrayList;
@@ -38,7 +39,8 @@ public class ArrowheadCloudApi {
   private static final DatabaseManager dm = DatabaseManager.getInstance();
 
   @GET
-  public List<ArrowheadCloud> getClouds(@QueryParam("operator") String operator, @QueryParam("cloudName") String cloudName) {
+  public Response getClouds(@QueryParam("operator") String operator, @QueryParam("cloudName") String cloudName, @QueryParam("afterId") long afterId,
+                            @QueryParam("limit") int limit) {
     if (operator != null) {
       restrictionMap.put("operator", operator);
     }
@@ -46,13 +48,14 @@ public class ArrowheadCloudApi {
       restrictionMap.put("cloudName", cloudName);
     }
 
-    List<ArrowheadCloud> cloudList = dm.getAll(ArrowheadCloud.class, restrictionMap);
-    if (cloudList.isEmpty()) {
+    List<ArrowheadCloud> cloudList = dm.getPage(ArrowheadCloud.class, restrictionMap, afterId, limit);
+    if (cloudList.isEmpty() && afterId == 0) {
       log.info("CommonApi:getAllClouds throws DataNotFoundException");
       throw new DataNotFoundException("ArrowheadClouds not found in the database.");
     }
 
-    return cloudList;
+    Long nextAfterId = Utility.getNextAfterId(cloudList, DatabaseManager.getPageLimit(limit), ArrowheadCloud::getId);
+    return Response.ok().entity(cloudList).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @GET
@@ -8,6 +8,7 @@
 package eu.arrowhead.common.web;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import java.util.ArrayList;
@@ -38,18 +39,19 @@ public class ArrowheadServiceApi {
   private static final DatabaseManager dm = DatabaseManager.getInstance();
 
   @GET
-  public List<ArrowheadService> getServices(@QueryParam("definition") String definition) {
+  public Response getServices(@QueryParam("definition") String definition, @QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
     if (definition != null) {
       restrictionMap.put("serviceDefinition", definition);
     }
 
-    List<ArrowheadService> serviceList = dm.getAll(ArrowheadService.class, restrictionMap);
-    if (serviceList.isEmpty()) {
+    List<ArrowheadService> serviceList = dm.getPage(ArrowheadService.class, restrictionMap, afterId, limit);
+    if (serviceList.isEmpty() && afterId == 0) {
       log.info("getServices throws DataNotFoundException");
       throw new DataNotFoundException("ArrowheadServices not found in the database.");
     }
 
-    return serviceList;
+    Long nextAfterId = Utility.getNextAfterId(serviceList, DatabaseManager.getPageLimit(limit), ArrowheadService::getId);
+    return Response.ok().entity(serviceList).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @GET
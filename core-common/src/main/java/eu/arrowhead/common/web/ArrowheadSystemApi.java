@@ -8,6 +8,7 @@
 package eu.arrowhead.common.web;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import java.util.ArrayList;
@@ -38,18 +39,19 @@ public class ArrowheadSystemApi {
   private static final DatabaseManager dm = DatabaseManager.getInstance();
 
   @GET
-  public List<ArrowheadSystem> getSystems(@QueryParam("systemName") String systemName) {
+  public Response getSystems(@QueryParam("systemName") String systemName, @QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
     if (systemName != null) {
       restrictionMap.put("systemName", systemName);
     }
 
-    List<ArrowheadSystem> systemList = dm.getAll(ArrowheadSystem.class, restrictionMap);
-    if (systemList.isEmpty()) {
+    List<ArrowheadSystem> systemList = dm.getPage(ArrowheadSystem.class, restrictionMap, afterId, limit);
+    if (systemList.isEmpty() && afterId == 0) {
       log.info("getSystems throws DataNotFoundException");
       throw new DataNotFoundException("ArrowheadSystems not found in the database.");
     }
 
-    return systemList;
+    Long nextAfterId = Utility.getNextAfterId(systemList, DatabaseManager.getPageLimit(limit), ArrowheadSystem::getId);
+    return Response.ok().entity(systemList).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @GET
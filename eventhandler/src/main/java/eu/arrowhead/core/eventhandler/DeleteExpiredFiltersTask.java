@@ -10,6 +10,7 @@ package eu.arrowhead.core.eventhandler;
 import eu.arrowhead.common.DatabaseManager;
 import eu.arrowhead.common.database.EventFilter;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.TimerTask;
 import org.apache.log4j.Logger;
@@ -22,12 +23,15 @@ public class DeleteExpiredFiltersTask extends TimerTask {
   @Override
   public void run() {
     List<EventFilter> filterList = dm.getAll(EventFilter.class, null);
+    List<EventFilter> expiredFilters = new ArrayList<>();
     for (EventFilter filter : filterList) {
       if (filter.getEndDate() != null && filter.getEndDate().isBefore(ZonedDateTime.now())) {
         dm.delete(filter);
+        expiredFilters.add(filter);
         log.debug(filter.toString() + " removed do to expired end date.");
       }
     }
+    EventSubscriptionIndex.remove(expiredFilters);
   }
 
 }
@@ -0,0 +1,247 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.eventhandler;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.json.JacksonJsonProviderAtRest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the failed event deliveries (and optionally every queued delivery, with <tt>outbox_journal_pending</tt>) in an {@link OutboxJournal}, and
+ * retries them with exponential backoff until the subscriber accepts them, or they are older than <tt>outbox_max_age</tt> minutes. The waiting
+ * deliveries are replayed after a restart, so the delivery does not depend on the publisher retrying. Deliveries are retried at least once,
+ * subscribers can get the same event twice (e.g. after a crash during the delivery), and the retried events can overtake each other.
+ * <p>
+ * The retries take at most half of the free capacity of the delivery engine in every round (so new events are not refused because of them), and
+ * skip the subscribers whose queue is full. A delivery which never succeeds keeps its journal segment (and every later one) on the disk, so when
+ * the journal has more than <tt>outbox_max_segments</tt> segments, the deliveries of the oldest segment are given up.
+ * <p>
+ * The publisher's delivery report still contains the result of the first attempt.
+ */
+final class DeliveryOutbox {
+
+  private static final Logger log = Logger.getLogger(DeliveryOutbox.class.getName());
+  private static final long RETRY_CHECK_INTERVAL = 1000L;
+  // The retries of one round can take 1/RETRY_CAPACITY_SHARE of the free delivery capacity
+  private static final int RETRY_CAPACITY_SHARE = 2;
+
+  private static OutboxJournal journal;
+  // Journal id -> the delivery waiting for a retry (or being retried), guarded by the class lock
+  private static final Map<Long, Entry> entries = new HashMap<>();
+  private static final LongAdder retried = new LongAdder();
+  private static final LongAdder dropped = new LongAdder();
+
+  private DeliveryOutbox() throws AssertionError {
+    throw new AssertionError("DeliveryOutbox is a non-instantiable class");
+  }
+
+  /**
+   * Opens the journal, schedules the deliveries left in it for an immediate retry, and starts the retry timer.
+   */
+  static synchronized void init() {
+    OutboxJournal openedJournal = new OutboxJournal(Paths.get(EventHandlerMain.OUTBOX_DIRECTORY), EventHandlerMain.OUTBOX_SEGMENT_SIZE);
+    List<OutboxJournal.Record> records;
+    try {
+      records = openedJournal.replay();
+    } catch (IOException e) {
+      throw new ArrowheadException("Could not open the delivery outbox journal in " + EventHandlerMain.OUTBOX_DIRECTORY, e);
+    }
+    for (OutboxJournal.Record record : records) {
+      entries.put(record.id, new Entry(record.url, new String(record.payload, StandardCharsets.UTF_8), record.createdAt));
+    }
+    journal = openedJournal;
+
+    ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "outbox-retry");
+      thread.setDaemon(true);
+      return thread;
+    });
+    retryTimer.scheduleWithFixedDelay(DeliveryOutbox::retryDue, RETRY_CHECK_INTERVAL, RETRY_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Journals a delivery before it is queued (if <tt>outbox_journal_pending</tt> is set), so it survives a restart. Returns the journal id of the
+   * delivery, or 0 if it was not journaled.
+   */
+  static long addPending(String url, Object payload) {
+    if (journal == null || !EventHandlerMain.OUTBOX_JOURNAL_PENDING) {
+      return 0L;
+    }
+    return append(url, payload, true);
+  }
+
+  /**
+   * Closes the journal record of a successful delivery (0 means it had none).
+   */
+  static void delivered(long id) {
+    if (id == 0L) {
+      return;
+    }
+    synchronized (DeliveryOutbox.class) {
+      entries.remove(id);
+      appendDone(id);
+    }
+  }
+
+  /**
+   * Schedules the next attempt of a failed delivery, journaling it first if it has no journal record yet (0 id).
+   */
+  static void failed(long id, String url, Object payload) {
+    if (journal == null) {
+      return;
+    }
+    if (id == 0L) {
+      id = append(url, payload, false);
+      if (id == 0L) {
+        return;
+      }
+    }
+    synchronized (DeliveryOutbox.class) {
+      Entry entry = entries.get(id);
+      if (entry != null) {
+        entry.inFlight = false;
+        entry.attempts++;
+        long backoff = EventHandlerMain.OUTBOX_RETRY_INITIAL << Math.min(entry.attempts - 1, 30);
+        entry.nextAttempt = System.currentTimeMillis() + Math.min(backoff, EventHandlerMain.OUTBOX_RETRY_MAX);
+      }
+    }
+  }
+
+  private static long append(String url, Object payload, boolean inFlight) {
+    try {
+      // Stored as JSON, the retries send this text as it is
+      String json = payload instanceof String ? (String) payload : JacksonJsonProviderAtRest.getMapper().writeValueAsString(payload);
+      long createdAt = System.currentTimeMillis();
+      synchronized (DeliveryOutbox.class) {
+        long id = journal.appendPending(url, json.getBytes(StandardCharsets.UTF_8), createdAt);
+        Entry entry = new Entry(url, json, createdAt);
+        entry.inFlight = inFlight;
+        entries.put(id, entry);
+        return id;
+      }
+    } catch (IOException e) {
+      log.error("Delivery to " + url + " could not be added to the outbox, it will not be retried: " + e.getMessage());
+      return 0L;
+    }
+  }
+
+  private static void appendDone(long id) {
+    try {
+      journal.appendDone(id);
+    } catch (IOException e) {
+      // The delivery is repeated after a restart
+      log.error("Outbox journal could not record the end of delivery " + id + ": " + e.getMessage());
+    }
+  }
+
+  // Hands the due deliveries to the delivery engine, as many as its queues can take
+  private static void retryDue() {
+    try {
+      long now = System.currentTimeMillis();
+      long maxAge = TimeUnit.MINUTES.toMillis(EventHandlerMain.OUTBOX_MAX_AGE);
+      int capacity = EventDeliveryEngine.getFreeCapacity() / RETRY_CAPACITY_SHARE;
+      Map<Long, Entry> due = new LinkedHashMap<>();
+      synchronized (DeliveryOutbox.class) {
+        List<Long> expired = new ArrayList<>();
+        // Destination URL -> the deliveries its queue can still take in this round
+        Map<String, Integer> freeSlots = new HashMap<>();
+        for (Map.Entry<Long, Entry> candidate : entries.entrySet()) {
+          Entry entry = candidate.getValue();
+          if (entry.inFlight) {
+            continue;
+          }
+          if (maxAge > 0 && now - entry.createdAt > maxAge) {
+            expired.add(candidate.getKey());
+          } else if (entry.nextAttempt <= now && due.size() < capacity) {
+            int slots = freeSlots.computeIfAbsent(entry.url, EventDeliveryEngine::getFreeQueueSlots);
+            if (slots > 0) {
+              freeSlots.put(entry.url, slots - 1);
+              entry.inFlight = true;
+              due.put(candidate.getKey(), entry);
+            }
+          }
+        }
+        for (Long id : expired) {
+          giveUp(id);
+        }
+        dropOldestSegments();
+      }
+
+      for (Map.Entry<Long, Entry> delivery : due.entrySet()) {
+        retried.increment();
+        EventDeliveryEngine.redeliver(delivery.getValue().url, delivery.getValue().payload, delivery.getKey());
+      }
+      journal.force();
+    } catch (RuntimeException e) {
+      // An exception would stop the scheduled task
+      log.error("Outbox retry failed: " + e.getMessage());
+    }
+  }
+
+  private static void giveUp(long id) {
+    Entry entry = entries.remove(id);
+    appendDone(id);
+    dropped.increment();
+    if (entry != null) {
+      log.error("Delivery to " + entry.url + " given up after " + entry.attempts + " attempts");
+    }
+  }
+
+  // Gives up the deliveries keeping the oldest segments on the disk, until the journal is within outbox_max_segments
+  private static void dropOldestSegments() {
+    while (journal.getSegmentCount() > EventHandlerMain.OUTBOX_MAX_SEGMENTS) {
+      List<Long> ids = journal.getOldestSegmentIds();
+      if (ids.isEmpty()) {
+        return;
+      }
+      log.error("Outbox journal has more than " + EventHandlerMain.OUTBOX_MAX_SEGMENTS + " segments, " + ids.size() + " deliveries are given up");
+      for (Long id : ids) {
+        giveUp(id);
+      }
+    }
+  }
+
+  static synchronized Map<String, Object> getMetrics() {
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("enabled", journal != null);
+    metrics.put("waitingDeliveries", entries.size());
+    metrics.put("journalSegments", journal != null ? journal.getSegmentCount() : 0);
+    metrics.put("retried", retried.sum());
+    metrics.put("dropped", dropped.sum());
+    return metrics;
+  }
+
+  private static class Entry {
+
+    private final String url;
+    private final String payload;
+    private final long createdAt;
+    private int attempts;
+    private long nextAttempt;
+    private boolean inFlight;
+
+    Entry(String url, String payload, long createdAt) {
+      this.url = url;
+      this.payload = payload;
+      this.createdAt = createdAt;
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.eventhandler;
+
+import eu.arrowhead.common.messages.Event;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the events of the subscribers which asked for batched delivery (see {@link eu.arrowhead.common.database.EventFilter#getMaxBatchSize()}).
+ * The events to the same subscriber URL are sent as one JSON array, when the batch is full or its linger time is up, whichever comes first. The
+ * batches are queued by the {@link EventDeliveryEngine} like the single events, and every event of a batch gets the delivery result of the batch.
+ */
+final class EventBatcher {
+
+  // Subscriber URL -> the batch currently collecting events
+  private static final Map<String, Batch> openBatches = new HashMap<>();
+  private static final ScheduledExecutorService scheduler = createScheduler();
+
+  private EventBatcher() throws AssertionError {
+    throw new AssertionError("EventBatcher is a non-instantiable class");
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "event-batcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  /**
+   * Adds the event to the open batch of the subscriber URL (or opens a new one). The settings of the first event decide the linger time of a batch.
+   *
+   * @param lingerMillis the maximum time the first event of a new batch waits for others, null means <tt>batch_default_linger</tt>
+   */
+  static CompletableFuture<Boolean> add(String url, Event event, int maxBatchSize, Integer lingerMillis) {
+    Batch full = null;
+    CompletableFuture<Boolean> result;
+    synchronized (openBatches) {
+      Batch batch = openBatches.get(url);
+      if (batch == null) {
+        batch = new Batch(url);
+        openBatches.put(url, batch);
+        Batch created = batch;
+        long linger = lingerMillis == null ? EventHandlerMain.BATCH_DEFAULT_LINGER : lingerMillis;
+        batch.lingerTimer = scheduler.schedule(() -> flush(created), linger, TimeUnit.MILLISECONDS);
+      }
+      batch.events.add(event);
+      result = batch.result;
+      if (batch.events.size() >= maxBatchSize) {
+        openBatches.remove(url);
+        batch.lingerTimer.cancel(false);
+        full = batch;
+      }
+    }
+
+    if (full != null) {
+      send(full);
+    }
+    return result;
+  }
+
+  private static void flush(Batch batch) {
+    synchronized (openBatches) {
+      if (!openBatches.remove(batch.url, batch)) {
+        // Already sent, because it was filled up
+        return;
+      }
+    }
+    send(batch);
+  }
+
+  private static void send(Batch batch) {
+    EventDeliveryEngine.deliver(batch.url, batch.events).thenAccept(batch.result::complete);
+  }
+
+  private static class Batch {
+
+    private final String url;
+    private final List<Event> events = new ArrayList<>();
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    private ScheduledFuture<?> lingerTimer;
+
+    Batch(String url) {
+      this.url = url;
+    }
+  }
+
+}
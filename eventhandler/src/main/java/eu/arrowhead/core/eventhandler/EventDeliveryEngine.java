@@ -0,0 +1,271 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.eventhandler;
+
+import eu.arrowhead.common.HttpClientPool;
+import eu.arrowhead.common.Utility;
+import eu.arrowhead.common.exception.UnavailableServerException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+
+/**
+ * Sends the events (and the delivery reports) to the subscribers on a bounded worker pool.
+ * <p>
+ * Every destination URL has its own outbound queue, which is sent by at most <tt>delivery_max_per_destination</tt> workers at a time, so a slow
+ * or unreachable subscriber only delays its own deliveries. The workers take the deliveries in queue order, but with more than one worker per
+ * destination the requests overlap, so the subscriber may receive them in a different order (set the limit to 1 for in-order delivery). A worker
+ * sends one request and then goes to the back of the pool queue, so busy destinations can not starve the others. A full destination queue
+ * rejects the new deliveries to that destination (reported as failed).
+ * When more than <tt>delivery_max_queued</tt> deliveries are waiting in total, new events are refused with <i>503 Service Unavailable</i>, so
+ * the publishers slow down instead of the Event Handler running out of memory.
+ * <p>
+ * The failed (and rejected) deliveries are handed over to the {@link DeliveryOutbox} to be retried later.
+ */
+final class EventDeliveryEngine {
+
+  private static final Logger log = Logger.getLogger(EventDeliveryEngine.class.getName());
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+  private static final ThreadPoolExecutor pool = createPool();
+
+  private static final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+  private static final AtomicInteger queued = new AtomicInteger();
+  private static final LongAdder delivered = new LongAdder();
+  private static final LongAdder failed = new LongAdder();
+  private static final LongAdder rejected = new LongAdder();
+  private static final LongAdder latencyTotal = new LongAdder();
+  private static final AtomicLong latencyMax = new AtomicLong();
+
+  private EventDeliveryEngine() throws AssertionError {
+    throw new AssertionError("EventDeliveryEngine is a non-instantiable class");
+  }
+
+  // The work queue holds at most one task per busy destination worker, it is bounded by the destination queues
+  private static ThreadPoolExecutor createPool() {
+    int threads = EventHandlerMain.DELIVERY_THREADS;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "event-delivery-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Checks if the given number of new deliveries can be accepted.
+   *
+   * @throws UnavailableServerException with 503 status, if too many deliveries are already waiting
+   */
+  static void checkCapacity(int deliveryCount) {
+    int waiting = queued.get();
+    if (waiting > 0 && waiting + deliveryCount > EventHandlerMain.DELIVERY_MAX_QUEUED) {
+      log.warn("Event rejected, " + waiting + " deliveries are already waiting");
+      throw new UnavailableServerException("The Event Handler is overloaded, retry the publishing later.",
+                                           Status.SERVICE_UNAVAILABLE.getStatusCode());
+    }
+  }
+
+  /**
+   * Queues a POST request with the given payload to the destination URL. The returned future completes with true if the destination accepted the
+   * request, and with false if the request failed or the queue of the destination was full. Failed deliveries are retried by the
+   * {@link DeliveryOutbox}.
+   */
+  static CompletableFuture<Boolean> deliver(String url, Object payload) {
+    return deliverAll(url, Collections.singletonList(payload)).get(0);
+  }
+
+  /**
+   * Queues POST requests with the given payloads to the destination URL, in the order of the list (see {@link #deliver(String, Object)}). The
+   * requests are only sent in this order if <tt>delivery_max_per_destination</tt> is 1.
+   */
+  static List<CompletableFuture<Boolean>> deliverAll(String url, List<?> payloads) {
+    List<Delivery> deliveries = new ArrayList<>(payloads.size());
+    for (Object payload : payloads) {
+      deliveries.add(new Delivery(payload, DeliveryOutbox.addPending(url, payload)));
+    }
+    enqueue(url, deliveries);
+    return deliveries.stream().map(delivery -> delivery.result).collect(Collectors.toList());
+  }
+
+  /**
+   * Queues a delivery retried by the {@link DeliveryOutbox}, identified by its journal id.
+   */
+  static void redeliver(String url, String payload, long journalId) {
+    enqueue(url, Collections.singletonList(new Delivery(payload, journalId)));
+  }
+
+  /**
+   * Returns the number of deliveries which can be queued before the publishers are refused.
+   */
+  static int getFreeCapacity() {
+    return Math.max(0, EventHandlerMain.DELIVERY_MAX_QUEUED - queued.get());
+  }
+
+  /**
+   * Returns the number of deliveries the queue of the destination URL can still take.
+   */
+  static int getFreeQueueSlots(String url) {
+    Destination destination = destinations.get(url);
+    if (destination == null) {
+      return EventHandlerMain.DELIVERY_QUEUE_SIZE;
+    }
+    synchronized (destination) {
+      return Math.max(0, EventHandlerMain.DELIVERY_QUEUE_SIZE - destination.queue.size());
+    }
+  }
+
+  private static void enqueue(String url, List<Delivery> deliveries) {
+    List<Delivery> overflow = new ArrayList<>();
+    while (true) {
+      Destination destination = destinations.computeIfAbsent(url, Destination::new);
+      synchronized (destination) {
+        if (destination.removed) {
+          // Dropped by its last worker in the meantime, a new one has to be created
+          continue;
+        }
+        for (Delivery delivery : deliveries) {
+          if (destination.queue.size() < EventHandlerMain.DELIVERY_QUEUE_SIZE) {
+            destination.queue.addLast(delivery);
+            queued.incrementAndGet();
+          } else {
+            overflow.add(delivery);
+          }
+        }
+        while (destination.workers < EventHandlerMain.DELIVERY_MAX_PER_DESTINATION && destination.workers < destination.queue.size()) {
+          destination.workers++;
+          pool.execute(() -> sendNext(destination));
+        }
+      }
+      break;
+    }
+
+    if (!overflow.isEmpty()) {
+      rejected.add(overflow.size());
+      log.warn("Delivery queue of " + url + " is full, " + overflow.size() + " events are not sent now");
+      for (Delivery delivery : overflow) {
+        complete(url, delivery, false);
+      }
+    }
+  }
+
+  private static void sendNext(Destination destination) {
+    Delivery delivery;
+    synchronized (destination) {
+      delivery = destination.queue.pollFirst();
+      if (delivery == null) {
+        destination.workers--;
+        if (destination.workers == 0) {
+          destination.removed = true;
+          destinations.remove(destination.url, destination);
+        }
+        return;
+      }
+    }
+    queued.decrementAndGet();
+
+    boolean success = send(destination.url, delivery.payload);
+    long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - delivery.queuedAt);
+    (success ? delivered : failed).increment();
+    latencyTotal.add(latency);
+    latencyMax.accumulateAndGet(latency, Math::max);
+    complete(destination.url, delivery, success);
+
+    pool.execute(() -> sendNext(destination));
+  }
+
+  private static void complete(String url, Delivery delivery, boolean success) {
+    if (success) {
+      DeliveryOutbox.delivered(delivery.journalId);
+    } else {
+      DeliveryOutbox.failed(delivery.journalId, url, delivery.payload);
+    }
+    delivery.result.complete(success);
+  }
+
+  private static boolean send(String url, Object payload) {
+    try {
+      Utility.sendRequest(url, "POST", payload);
+    } catch (Exception e) {
+      log.error("Publishing event to " + url + " failed.");
+      e.printStackTrace();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the delivery counters, the latency (from queuing to the response of the subscriber, in milliseconds), the current queue depths, and the
+   * outbox and HTTP client pool metrics.
+   */
+  static Map<String, Object> getMetrics() {
+    long deliveredCount = delivered.sum();
+    long failedCount = failed.sum();
+    Map<String, Integer> queueDepths = new LinkedHashMap<>();
+    for (Destination destination : destinations.values()) {
+      synchronized (destination) {
+        queueDepths.put(destination.url, destination.queue.size());
+      }
+    }
+
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("queuedDeliveries", queued.get());
+    metrics.put("activeWorkers", pool.getActiveCount());
+    metrics.put("delivered", deliveredCount);
+    metrics.put("failed", failedCount);
+    metrics.put("rejected", rejected.sum());
+    metrics.put("averageLatencyMillis", deliveredCount + failedCount == 0 ? 0L : latencyTotal.sum() / (deliveredCount + failedCount));
+    metrics.put("maxLatencyMillis", latencyMax.get());
+    metrics.put("queueDepths", queueDepths);
+    metrics.put("outbox", DeliveryOutbox.getMetrics());
+    metrics.put("httpClient", HttpClientPool.getMetrics());
+    return metrics;
+  }
+
+  private static class Destination {
+
+    private final String url;
+    private final Deque<Delivery> queue = new ArrayDeque<>();
+    private int workers;
+    private boolean removed;
+
+    Destination(String url) {
+      this.url = url;
+    }
+  }
+
+  private static class Delivery {
+
+    private final Object payload;
+    // Id of the outbox journal record, 0 if the delivery is not journaled
+    private final long journalId;
+    private final long queuedAt = System.nanoTime();
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+    Delivery(Object payload, long journalId) {
+      this.payload = payload;
+      this.journalId = journalId;
+    }
+  }
+
+}
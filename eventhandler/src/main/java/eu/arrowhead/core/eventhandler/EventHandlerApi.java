@@ -1,8 +1,10 @@
 package eu.arrowhead.core.eventhandler;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.EventFilter;
 import eu.arrowhead.common.exception.DataNotFoundException;
+import java.util.Collections;
 import java.util.List;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
@@ -12,6 +14,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
@@ -24,9 +27,10 @@ public class EventHandlerApi {
 
   @GET
   @Path("subscriptions")
-  public Response getAllEventSubscriptions() {
-    List<EventFilter> subscriptions = dm.getAll(EventFilter.class, null);
-    return Response.ok().entity(subscriptions).build();
+  public Response getAllEventSubscriptions(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
+    List<EventFilter> subscriptions = dm.getPage(EventFilter.class, null, afterId, limit);
+    Long nextAfterId = Utility.getNextAfterId(subscriptions, DatabaseManager.getPageLimit(limit), EventFilter::getId);
+    return Response.ok().entity(subscriptions).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @GET
@@ -42,6 +46,7 @@ public class EventHandlerApi {
   public Response deleteEventSubscriptionById(@PathParam("id") long id) {
     return dm.get(EventFilter.class, id).map(entry -> {
       dm.delete(entry);
+      EventSubscriptionIndex.remove(Collections.singletonList(entry));
       return Response.ok().build();
     }).<DataNotFoundException>orElseThrow(() -> {
       throw new DataNotFoundException("EventFilter not found with id: " + id);
@@ -55,7 +60,17 @@ public class EventHandlerApi {
         () -> new DataNotFoundException("EventFilter not found with id: " + id));
     filter.partialUpdateFilter(updatedFilter);
     filter = dm.merge(filter);
+    EventSubscriptionIndex.put(filter);
     return Response.ok().entity(filter).build();
   }
 
+  /**
+   * Returns the queue depths, counters and latency of the event deliveries.
+   */
+  @GET
+  @Path("delivery")
+  public Response getDeliveryMetrics() {
+    return Response.ok().entity(EventDeliveryEngine.getMetrics()).build();
+  }
+
 }
@@ -15,16 +15,68 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import org.apache.log4j.Logger;
 
 public class EventHandlerMain extends ArrowheadMain {
 
+  private static final Logger log = Logger.getLogger(EventHandlerMain.class.getName());
+
   static int EVENT_PUBLISHING_TOLERANCE;
+  static int BULK_MAX_EVENTS;
+  static int DELIVERY_THREADS;
+  static int DELIVERY_MAX_PER_DESTINATION;
+  static int DELIVERY_QUEUE_SIZE;
+  static int DELIVERY_MAX_QUEUED;
+  static int BATCH_DEFAULT_LINGER;
+  static String OUTBOX_DIRECTORY;
+  static int OUTBOX_SEGMENT_SIZE;
+  static boolean OUTBOX_JOURNAL_PENDING;
+  static long OUTBOX_RETRY_INITIAL;
+  static long OUTBOX_RETRY_MAX;
+  static int OUTBOX_MAX_AGE;
+  static int OUTBOX_MAX_SEGMENTS;
 
   {
     EVENT_PUBLISHING_TOLERANCE = props.getIntProperty("event_publishing_tolerance", 60);
+    BULK_MAX_EVENTS = props.getIntProperty("bulk_max_events", 1000);
+    DELIVERY_THREADS = props.getIntProperty("delivery_threads", 16);
+    DELIVERY_MAX_PER_DESTINATION = props.getIntProperty("delivery_max_per_destination", 2);
+    DELIVERY_QUEUE_SIZE = props.getIntProperty("delivery_queue_size", 1000);
+    DELIVERY_MAX_QUEUED = props.getIntProperty("delivery_max_queued", 10000);
+    BATCH_DEFAULT_LINGER = props.getIntProperty("batch_default_linger", 1000);
+    OUTBOX_DIRECTORY = props.getProperty("outbox_directory", "outbox");
+    OUTBOX_SEGMENT_SIZE = props.getIntProperty("outbox_segment_size", 16 * 1024 * 1024);
+    OUTBOX_JOURNAL_PENDING = props.getBooleanProperty("outbox_journal_pending", false);
+    OUTBOX_RETRY_INITIAL = props.getIntProperty("outbox_retry_initial", 1000);
+    OUTBOX_RETRY_MAX = props.getIntProperty("outbox_retry_max", 300000);
+    OUTBOX_MAX_AGE = props.getIntProperty("outbox_max_age", 1440);
+    OUTBOX_MAX_SEGMENTS = props.getIntProperty("outbox_max_segments", 64);
   }
 
   private EventHandlerMain(String[] args) {
+    // Loading the event filters into memory before the web-server starts serving requests
+    EventSubscriptionIndex.reload();
+    int reloadInterval = props.getIntProperty("subscription_index_reload_interval", 10);
+    if (reloadInterval > 0) {
+      TimerTask reloadTask = new TimerTask() {
+        @Override
+        public void run() {
+          // An exception would cancel the Timer, and the index would never be reloaded again (expired and changed filters depend on it)
+          try {
+            EventSubscriptionIndex.reload();
+          } catch (RuntimeException e) {
+            log.error("Reloading the subscription index failed: " + e.getMessage(), e);
+          }
+        }
+      };
+      Timer reloadTimer = new Timer(true);
+      reloadTimer.schedule(reloadTask, reloadInterval * 60L * 1000L, reloadInterval * 60L * 1000L);
+    }
+    // Resuming the deliveries left in the outbox by the previous run
+    if (props.getBooleanProperty("outbox_enabled", true)) {
+      DeliveryOutbox.init();
+    }
+
     Set<Class<?>> classes = new HashSet<>(
         Arrays.asList(ArrowheadSystemApi.class, EventHandlerResource.class, EventHandlerApi.class));
     String[] packages = {"eu.arrowhead.common.exception", "eu.arrowhead.common.json", "eu.arrowhead.common.filter"};
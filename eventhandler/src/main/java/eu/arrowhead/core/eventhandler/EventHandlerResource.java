@@ -8,11 +8,13 @@
 package eu.arrowhead.core.eventhandler;
 
 import eu.arrowhead.common.Utility;
+import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.EventFilter;
 import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.messages.Event;
 import eu.arrowhead.common.messages.PublishEvent;
+import eu.arrowhead.common.messages.PublishEvents;
 import java.time.ZonedDateTime;
-import java.util.concurrent.CompletableFuture;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -48,40 +50,64 @@ public class EventHandlerResource {
   @POST
   @Path("publish")
   public Response publishEvent(@Valid PublishEvent eventPublished, @Context ContainerRequestContext requestContext) {
-    if (eventPublished.getEvent().getTimestamp() == null) {
-      eventPublished.getEvent().setTimestamp(ZonedDateTime.now());
+    checkTimestamp(eventPublished.getEvent());
+    boolean isSecure = requestContext.getSecurityContext().isSecure();
+
+    /* First the event will be propagated to consumers, then the results will be sent back to the publisher, summarizing which consumers received the
+       event without an error. */
+    EventHandlerService.propagateEvent(eventPublished).thenAccept(
+        map -> sendDeliveryReport(eventPublished.getSource(), eventPublished.getDeliveryCompleteUri(), isSecure, map));
+
+    //return OK while the event publishing happens in async
+    return Response.status(Status.OK).build();
+  }
+
+  /**
+   * Publishes a list of events from one source. The events are queued to each subscriber in the order of the list, but they only arrive in this
+   * order if <tt>delivery_max_per_destination</tt> is 1 (see {@link EventDeliveryEngine}). The delivery report is a list with the results of
+   * every event.
+   */
+  @POST
+  @Path("publish/bulk")
+  public Response publishEvents(@Valid PublishEvents eventsPublished, @Context ContainerRequestContext requestContext) {
+    if (eventsPublished.getEvents().size() > EventHandlerMain.BULK_MAX_EVENTS) {
+      throw new BadPayloadException("At most " + EventHandlerMain.BULK_MAX_EVENTS + " events can be published in one request.");
+    }
+    for (Event event : eventsPublished.getEvents()) {
+      checkTimestamp(event);
+    }
+    boolean isSecure = requestContext.getSecurityContext().isSecure();
+
+    EventHandlerService.propagateEvents(eventsPublished.getSource(), eventsPublished.getEvents()).thenAccept(
+        results -> sendDeliveryReport(eventsPublished.getSource(), eventsPublished.getDeliveryCompleteUri(), isSecure, results));
+    return Response.status(Status.OK).build();
+  }
+
+  private static void checkTimestamp(Event event) {
+    if (event.getTimestamp() == null) {
+      event.setTimestamp(ZonedDateTime.now());
     }
     if (EventHandlerMain.EVENT_PUBLISHING_TOLERANCE > 0) {
-      if (eventPublished.getEvent().getTimestamp().isBefore(ZonedDateTime.now().minusMinutes(EventHandlerMain.EVENT_PUBLISHING_TOLERANCE))) {
+      if (event.getTimestamp().isBefore(ZonedDateTime.now().minusMinutes(EventHandlerMain.EVENT_PUBLISHING_TOLERANCE))) {
         throw new BadPayloadException(
             "This event is too old to publish. Maximum allowed delay before publishing the event: " + EventHandlerMain.EVENT_PUBLISHING_TOLERANCE);
       }
-      if (eventPublished.getEvent().getTimestamp()
-                        .isAfter(ZonedDateTime.now().plusMinutes(EventHandlerMain.EVENT_PUBLISHING_TOLERANCE))) {
+      if (event.getTimestamp().isAfter(ZonedDateTime.now().plusMinutes(EventHandlerMain.EVENT_PUBLISHING_TOLERANCE))) {
         throw new BadPayloadException(
             "This event is too far in the future. Maximum allowed timestamp tolerance for events: " + EventHandlerMain.EVENT_PUBLISHING_TOLERANCE);
       }
     }
-    boolean isSecure = requestContext.getSecurityContext().isSecure();
+  }
 
-    /* First the event will be propagated to consumers, then the results will be sent back to the publisher, summarizing which consumers received the
-       event without an error. */
-    CompletableFuture.supplyAsync(() -> EventHandlerService.propagateEvent(eventPublished)).thenAccept(map -> {
-      if (eventPublished.getDeliveryCompleteUri() != null) {
-        String callbackUrl = Utility
-            .getUri(eventPublished.getSource().getAddress(), eventPublished.getSource().getPort(), eventPublished.getDeliveryCompleteUri(), isSecure,
-                    false);
-        try {
-          Utility.sendRequest(callbackUrl, "POST", map);
-        } catch (RuntimeException e) {
+  private static void sendDeliveryReport(ArrowheadSystem source, String deliveryCompleteUri, boolean isSecure, Object report) {
+    if (deliveryCompleteUri != null) {
+      String callbackUrl = Utility.getUri(source.getAddress(), source.getPort(), deliveryCompleteUri, isSecure, false);
+      EventDeliveryEngine.deliver(callbackUrl, report).thenAccept(delivered -> {
+        if (!delivered) {
           log.error("Callback after event publishing failed at: " + callbackUrl);
-          e.printStackTrace();
         }
-      }
-    });
-
-    //return OK while the event publishing happens in async
-    return Response.status(Status.OK).build();
+      });
+    }
   }
 
   @POST
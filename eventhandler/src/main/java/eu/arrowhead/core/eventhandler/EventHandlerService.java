@@ -15,86 +15,112 @@ import eu.arrowhead.common.exception.ArrowheadException;
 import eu.arrowhead.common.messages.Event;
 import eu.arrowhead.common.messages.PublishEvent;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 import org.apache.log4j.Logger;
 
 final class EventHandlerService {
 
   private static final Logger log = Logger.getLogger(EventHandlerResource.class.getName());
   private static final DatabaseManager dm = DatabaseManager.getInstance();
-  private static final HashMap<String, Object> restrictionMap = new HashMap<>();
 
-  private static List<EventFilter> getMatchingEventFilters(PublishEvent pe) {
-    restrictionMap.clear();
-    restrictionMap.put("eventType", pe.getEvent().getType());
-    List<EventFilter> filters = dm.getAll(EventFilter.class, restrictionMap);
-    // Remove the filter if the event source is not in the filter's source list (every source is accepted, if the
-    // filter has no sources)
-    filters.removeIf(current -> !current.getSources().isEmpty() && !current.getSources().contains(pe.getSource()));
-    // Remove the filter if the event timestamp is not between the filter's startDate and endDate
-    filters.removeIf(
-        current -> current.getStartDate() != null && pe.getEvent().getTimestamp().isBefore(current.getStartDate()));
-    filters.removeIf(
-        current -> current.getEndDate() != null && pe.getEvent().getTimestamp().isAfter(current.getEndDate()));
-    // Remove the filter if MatchMetadata = true and the event and filter metadata do not match perfectly
-    filters.removeIf(
-        current -> current.isMatchMetadata() && !pe.getEvent().getEventMetadata().equals(current.getFilterMetadata()));
-
-    return filters;
+  static CompletableFuture<Map<String, Boolean>> propagateEvent(PublishEvent eventPublished) {
+    return propagateEvents(eventPublished.getSource(), Collections.singletonList(eventPublished.getEvent())).thenApply(results -> results.get(0));
   }
 
-  private static boolean sendRequest(String url, Event event) {
+  static CompletableFuture<List<Map<String, Boolean>>> propagateEvents(ArrowheadSystem source, List<Event> events) {
+    // Get the event relevant filters from the subscription index
+    List<List<EventFilter>> matches = EventSubscriptionIndex.getMatchingFilters(source, events);
+    // Group the events by the URLs created from the filters, keeping the publishing order
+    Map<EventFilter, String> filterUrls = new IdentityHashMap<>();
+    Map<String, Target> targets = new LinkedHashMap<>();
+    int deliveryCount = 0;
+    for (int i = 0; i < events.size(); i++) {
+      for (EventFilter filter : matches.get(i)) {
+        if (!filterUrls.containsKey(filter)) {
+          filterUrls.put(filter, getNotifyUrl(filter));
+        }
+        String url = filterUrls.get(filter);
+        if (url == null) {
+          continue;
+        }
+        // An event goes to a URL once, with the batching settings of the first filter matching it there
+        Target target = targets.computeIfAbsent(url, key -> new Target());
+        if (target.eventIndexes.isEmpty() || target.eventIndexes.get(target.eventIndexes.size() - 1) != i) {
+          target.eventIndexes.add(i);
+          target.filters.add(filter);
+          deliveryCount++;
+        }
+      }
+    }
+
+    EventDeliveryEngine.checkCapacity(deliveryCount);
+    List<Map<String, Boolean>> results = new ArrayList<>(events.size());
+    for (int i = 0; i < events.size(); i++) {
+      results.add(new ConcurrentHashMap<>());
+    }
+    List<CompletableFuture<?>> deliveries = new ArrayList<>();
+    for (Map.Entry<String, Target> entry : targets.entrySet()) {
+      String url = entry.getKey();
+      List<Integer> eventIndexes = entry.getValue().eventIndexes;
+      List<Event> targetEvents = eventIndexes.stream().map(events::get).collect(Collectors.toList());
+      List<CompletableFuture<Boolean>> targetDeliveries = deliver(url, entry.getValue().filters, targetEvents);
+      for (int j = 0; j < eventIndexes.size(); j++) {
+        Map<String, Boolean> result = results.get(eventIndexes.get(j));
+        deliveries.add(targetDeliveries.get(j).thenAccept(published -> result.put(url, published)));
+      }
+    }
+    int subscriberCount = targets.size();
+    return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).thenApply(done -> {
+      log.info(events.size() + " event(s) published to " + subscriberCount + " subscribers.");
+      return results;
+    });
+  }
+
+  private static String getNotifyUrl(EventFilter filter) {
     try {
-      Utility.sendRequest(url, "POST", event);
-    } catch (Exception e) {
-      log.error("Publishing event to " + url + " failed.");
+      boolean isSecure = filter.getConsumer().getAuthenticationInfo() != null;
+      return Utility.getUri(filter.getConsumer().getAddress(), filter.getConsumer().getPort(), filter.getNotifyUri(), isSecure, false);
+    } catch (ArrowheadException | NullPointerException e) {
       e.printStackTrace();
-      return false;
+      return null;
     }
-    return true;
   }
 
-  static Map<String, Boolean> propagateEvent(PublishEvent eventPublished) {
-    // Get the event relevant filters from the DB
-    List<EventFilter> filters = getMatchingEventFilters(eventPublished);
-    // Create the URLs from the filters
-    List<String> urls = new ArrayList<>();
-    for (EventFilter filter : filters) {
-      String url;
-      try {
-        boolean isSecure = filter.getConsumer().getAuthenticationInfo() != null;
-        url = Utility
-            .getUri(filter.getConsumer().getAddress(), filter.getConsumer().getPort(), filter.getNotifyUri(), isSecure,
-                    false);
-      } catch (ArrowheadException | NullPointerException e) {
-        e.printStackTrace();
-        continue;
+  // Events whose filter asks for batches go into the next batch(es), the others are sent right away (filters[i] belongs to events[i])
+  private static List<CompletableFuture<Boolean>> deliver(String url, List<EventFilter> filters, List<Event> events) {
+    List<CompletableFuture<Boolean>> results = new ArrayList<>(Collections.nCopies(events.size(), null));
+    List<Integer> immediateIndexes = new ArrayList<>();
+    for (int i = 0; i < events.size(); i++) {
+      EventFilter filter = filters.get(i);
+      if (filter.getMaxBatchSize() != null && filter.getMaxBatchSize() > 1) {
+        results.set(i, EventBatcher.add(url, events.get(i), filter.getMaxBatchSize(), filter.getMaxBatchLinger()));
+      } else {
+        immediateIndexes.add(i);
       }
-      urls.add(url);
     }
 
-    Map<String, Boolean> result = new ConcurrentHashMap<>();
-    /*Note: ForkJoinPool.commonPool (used by CompletableFuture as default) has a default size equal to one less than
-    the number of cores of your CPU. For faster execution (when there is a large number of urls),
-    use custom thread pool manager:
-      Executor myThreadPool = Executors.newFixedThreadPool(numberOfThreads);*/
-    Stream<CompletableFuture> stream = urls.stream().map(
-        url -> CompletableFuture.supplyAsync(() -> sendRequest(url, eventPublished.getEvent()))
-                                .thenAcceptAsync(published -> result.put(url, published)));
-    CompletableFuture.allOf(stream.toArray(CompletableFuture[]::new)).join();
-    log.info("Event published to " + urls.size() + " subscribers.");
-    return result;
+    if (!immediateIndexes.isEmpty()) {
+      List<Event> immediateEvents = immediateIndexes.stream().map(events::get).collect(Collectors.toList());
+      List<CompletableFuture<Boolean>> immediateResults = EventDeliveryEngine.deliverAll(url, immediateEvents);
+      for (int j = 0; j < immediateIndexes.size(); j++) {
+        results.set(immediateIndexes.get(j), immediateResults.get(j));
+      }
+    }
+    return results;
   }
 
   static EventFilter saveEventFilter(EventFilter filter) {
-    restrictionMap.clear();
+    Map<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("systemName", filter.getConsumer().getSystemName());
     restrictionMap.put("address", filter.getConsumer().getAddress());
     restrictionMap.put("port", filter.getConsumer().getPort());
@@ -125,14 +151,16 @@ final class EventHandlerService {
       }
 
       filter.setSources(sources);
-      return dm.save(filter);
+      EventFilter savedFilter = dm.save(filter);
+      EventSubscriptionIndex.put(savedFilter);
+      return savedFilter;
     }
 
     return null;
   }
 
   static int deleteEventFilter(String eventType, String consumerName) {
-    restrictionMap.clear();
+    Map<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("systemName", consumerName);
     List<ArrowheadSystem> consumers = dm.getAll(ArrowheadSystem.class, restrictionMap);
     if (consumers.isEmpty()) {
@@ -146,9 +174,17 @@ final class EventHandlerService {
       EventFilter filter = dm.get(EventFilter.class, restrictionMap);
       if (filter != null) {
         dm.delete(filter);
+        EventSubscriptionIndex.remove(Collections.singletonList(filter));
       }
     }
     return 200; //OK ~ delete was successful
   }
 
+  // The events going to one URL, and the filter each of them is delivered by
+  private static class Target {
+
+    private final List<Integer> eventIndexes = new ArrayList<>();
+    private final List<EventFilter> filters = new ArrayList<>();
+  }
+
 }
@@ -0,0 +1,200 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.eventhandler;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.EventFilter;
+import eu.arrowhead.common.messages.Event;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory copy of the event filters (subscriptions), so a published event can be matched to its subscribers without querying the database.
+ * <p>
+ * The filters are grouped by event type, and within an event type by the sources they accept (filters without sources accept every source). The
+ * metadata a filter requires (if <tt>matchMetadata</tt> is set) is copied when the filter is indexed, together with its hash code, so most
+ * non-matching events are rejected without comparing the maps.
+ * <p>
+ * The index is loaded at startup, kept up to date by the subscribe/unsubscribe requests, the mgmt API and the removal of expired filters, and
+ * periodically reloaded to pick up changes made directly in the database.
+ */
+final class EventSubscriptionIndex {
+
+  private static final Logger log = Logger.getLogger(EventSubscriptionIndex.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  // Every indexed filter by id, only changed while holding the class lock
+  private static final Map<Long, EventFilter> filters = new HashMap<>();
+  // Event type -> the subscriptions of the type, replaced as a whole on every change, so the publish path can read it without locking
+  private static final Map<String, Subscriptions> subscriptions = new ConcurrentHashMap<>();
+
+  private EventSubscriptionIndex() throws AssertionError {
+    throw new AssertionError("EventSubscriptionIndex is a non-instantiable class");
+  }
+
+  /**
+   * (Re)builds the whole index from the database.
+   */
+  static synchronized void reload() {
+    List<EventFilter> retrievedFilters = dm.getAll(EventFilter.class, null);
+    filters.clear();
+    for (EventFilter filter : retrievedFilters) {
+      filters.put(filter.getId(), filter);
+    }
+
+    Map<String, List<EventFilter>> byEventType = new HashMap<>();
+    for (EventFilter filter : retrievedFilters) {
+      byEventType.computeIfAbsent(filter.getEventType(), eventType -> new ArrayList<>()).add(filter);
+    }
+    subscriptions.keySet().retainAll(byEventType.keySet());
+    for (Map.Entry<String, List<EventFilter>> group : byEventType.entrySet()) {
+      subscriptions.put(group.getKey(), new Subscriptions(group.getValue()));
+    }
+    log.info("Event subscription index loaded with " + retrievedFilters.size() + " filters of " + byEventType.size() + " event types");
+  }
+
+  /**
+   * Adds a new filter, or replaces the indexed version of an updated one.
+   */
+  static synchronized void put(EventFilter filter) {
+    EventFilter previous = filters.put(filter.getId(), filter);
+    if (previous != null && !previous.getEventType().equals(filter.getEventType())) {
+      rebuild(previous.getEventType());
+    }
+    rebuild(filter.getEventType());
+  }
+
+  static synchronized void remove(Collection<EventFilter> removedFilters) {
+    List<String> eventTypes = new ArrayList<>();
+    for (EventFilter filter : removedFilters) {
+      EventFilter previous = filters.remove(filter.getId());
+      if (previous != null) {
+        eventTypes.add(previous.getEventType());
+      }
+    }
+    eventTypes.stream().distinct().forEach(EventSubscriptionIndex::rebuild);
+  }
+
+  /**
+   * Returns the filters matching each of the events published by the source (in the order of the events): the filters of the event type, which
+   * accept the source, whose time window contains the timestamp of the event, and which either do not require metadata matching or have exactly
+   * the metadata of the event. The candidate filters are looked up once per event type.
+   */
+  static List<List<EventFilter>> getMatchingFilters(ArrowheadSystem source, List<Event> events) {
+    Map<String, List<Subscription>> candidatesByType = new HashMap<>();
+    List<List<EventFilter>> matches = new ArrayList<>(events.size());
+    for (Event event : events) {
+      List<Subscription> candidates = candidatesByType.computeIfAbsent(event.getType(), eventType -> getCandidates(eventType, source));
+      List<EventFilter> eventMatches = new ArrayList<>();
+      if (!candidates.isEmpty()) {
+        Map<String, String> eventMetadata = event.getEventMetadata() == null ? Collections.emptyMap() : event.getEventMetadata();
+        addMatches(candidates, event, eventMetadata, eventMetadata.hashCode(), eventMatches);
+      }
+      matches.add(eventMatches);
+    }
+    return matches;
+  }
+
+  // The subscriptions of the event type accepting any source, followed by the ones accepting this source
+  private static List<Subscription> getCandidates(String eventType, ArrowheadSystem source) {
+    Subscriptions eventTypeSubscriptions = subscriptions.get(eventType);
+    if (eventTypeSubscriptions == null) {
+      return Collections.emptyList();
+    }
+    List<Subscription> sourceSubscriptions = eventTypeSubscriptions.bySource.get(source);
+    if (sourceSubscriptions == null) {
+      return eventTypeSubscriptions.anySource;
+    }
+    List<Subscription> candidates = new ArrayList<>(eventTypeSubscriptions.anySource);
+    candidates.addAll(sourceSubscriptions);
+    return candidates;
+  }
+
+  private static void addMatches(List<Subscription> candidates, Event event, Map<String, String> eventMetadata, int eventMetadataHash,
+                                 List<EventFilter> matches) {
+    ZonedDateTime timestamp = event.getTimestamp();
+    for (Subscription subscription : candidates) {
+      if (subscription.startDate != null && timestamp.isBefore(subscription.startDate)) {
+        continue;
+      }
+      if (subscription.endDate != null && timestamp.isAfter(subscription.endDate)) {
+        continue;
+      }
+      if (subscription.metadata != null && (subscription.metadataHash != eventMetadataHash || !subscription.metadata.equals(eventMetadata))) {
+        continue;
+      }
+      matches.add(subscription.filter);
+    }
+  }
+
+  private static void rebuild(String eventType) {
+    List<EventFilter> eventTypeFilters = new ArrayList<>();
+    for (EventFilter filter : filters.values()) {
+      if (filter.getEventType().equals(eventType)) {
+        eventTypeFilters.add(filter);
+      }
+    }
+    if (eventTypeFilters.isEmpty()) {
+      subscriptions.remove(eventType);
+    } else {
+      subscriptions.put(eventType, new Subscriptions(eventTypeFilters));
+    }
+  }
+
+  // The subscriptions of one event type
+  private static class Subscriptions {
+
+    private final List<Subscription> anySource = new ArrayList<>();
+    private final Map<ArrowheadSystem, List<Subscription>> bySource = new HashMap<>();
+
+    Subscriptions(List<EventFilter> eventTypeFilters) {
+      for (EventFilter filter : eventTypeFilters) {
+        Subscription subscription = new Subscription(filter);
+        if (filter.getSources() == null || filter.getSources().isEmpty()) {
+          anySource.add(subscription);
+        } else {
+          for (ArrowheadSystem source : filter.getSources()) {
+            bySource.computeIfAbsent(source, key -> new ArrayList<>()).add(subscription);
+          }
+        }
+      }
+    }
+  }
+
+  private static class Subscription {
+
+    private final EventFilter filter;
+    private final ZonedDateTime startDate;
+    private final ZonedDateTime endDate;
+    // Null if the filter accepts any metadata
+    private final Map<String, String> metadata;
+    private final int metadataHash;
+
+    Subscription(EventFilter filter) {
+      this.filter = filter;
+      this.startDate = filter.getStartDate();
+      this.endDate = filter.getEndDate();
+      if (Boolean.TRUE.equals(filter.isMatchMetadata())) {
+        this.metadata = filter.getFilterMetadata() == null ? Collections.emptyMap() : new HashMap<>(filter.getFilterMetadata());
+        this.metadataHash = metadata.hashCode();
+      } else {
+        this.metadata = null;
+        this.metadataHash = 0;
+      }
+    }
+  }
+
+}
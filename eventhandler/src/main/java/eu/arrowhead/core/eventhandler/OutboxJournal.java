@@ -0,0 +1,279 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.eventhandler;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.log4j.Logger;
+
+/**
+ * Append-only journal of the deliveries waiting in the {@link DeliveryOutbox}, written to memory-mapped segment files of a fixed size.
+ * <p>
+ * A delivery is added with a <i>pending</i> record, and closed with a <i>done</i> record (after it succeeded or was given up). Every record has a
+ * length and a CRC32 checksum, so a record torn by a crash ends the replay of its segment. When the current segment is full a new one is started,
+ * and the oldest segments are deleted once all their pending records are closed (always in order, so a <i>done</i> record is never deleted before
+ * the <i>pending</i> record it closes).
+ * <p>
+ * The written records survive a crash of the process without forcing them to disk, {@link #force()} is only needed against the crash of the
+ * operating system.
+ */
+class OutboxJournal {
+
+  private static final Logger log = Logger.getLogger(OutboxJournal.class.getName());
+  private static final String SEGMENT_PREFIX = "outbox-";
+  private static final String SEGMENT_SUFFIX = ".journal";
+  // Length and checksum
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final byte PENDING = 1;
+  private static final byte DONE = 2;
+
+  private final Path directory;
+  private final int segmentSize;
+  // Oldest first, the last one is written
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  // Id -> the segment of the pending record, for every delivery not closed yet
+  private final Map<Long, Segment> openRecords = new HashMap<>();
+  private long nextId = 1;
+  private long nextSegmentNumber = 1;
+  private boolean dirty;
+
+  OutboxJournal(Path directory, int segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Reads the existing segments, and returns the deliveries which were not closed, in the order they were added. Has to be called once, before
+   * the first record is appended.
+   */
+  synchronized List<Record> replay() throws IOException {
+    Files.createDirectories(directory);
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(files::add);
+    }
+    // The segment numbers are zero padded, so the names sort in order
+    Collections.sort(files);
+
+    Map<Long, Record> pending = new LinkedHashMap<>();
+    for (Path file : files) {
+      Segment segment = new Segment(file);
+      segments.addLast(segment);
+      nextSegmentNumber = Math.max(nextSegmentNumber, segment.number + 1);
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        readRecords(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), segment, pending);
+      }
+    }
+
+    startSegment();
+    deleteClosedSegments();
+    log.info("Outbox journal replayed " + files.size() + " segments, " + pending.size() + " deliveries are still waiting");
+    return new ArrayList<>(pending.values());
+  }
+
+  private void readRecords(ByteBuffer buffer, Segment segment, Map<Long, Record> pending) {
+    while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        // End of the written records (the rest of the segment is zero), or a record torn by a crash
+        return;
+      }
+      byte[] body = new byte[length];
+      buffer.get(body);
+      if (checksum != checksum(body)) {
+        log.warn("Corrupt record in " + segment.file + ", the rest of the segment is skipped");
+        return;
+      }
+
+      ByteBuffer record = ByteBuffer.wrap(body);
+      byte type = record.get();
+      long id = record.getLong();
+      nextId = Math.max(nextId, id + 1);
+      if (type == PENDING) {
+        long createdAt = record.getLong();
+        String url = new String(readBytes(record), StandardCharsets.UTF_8);
+        byte[] payload = readBytes(record);
+        pending.put(id, new Record(id, url, payload, createdAt));
+        openRecords.put(id, segment);
+        segment.openCount++;
+      } else if (type == DONE && pending.remove(id) != null) {
+        Segment pendingSegment = openRecords.remove(id);
+        pendingSegment.openCount--;
+      }
+    }
+  }
+
+  /**
+   * Appends a pending delivery, and returns its id.
+   *
+   * @throws IOException if the record is larger than a segment, or a new segment could not be created
+   */
+  synchronized long appendPending(String url, byte[] payload, long createdAt) throws IOException {
+    byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+    long id = nextId++;
+    ByteBuffer body = ByteBuffer.allocate(1 + 8 + 8 + 4 + urlBytes.length + 4 + payload.length);
+    body.put(PENDING).putLong(id).putLong(createdAt);
+    body.putInt(urlBytes.length).put(urlBytes);
+    body.putInt(payload.length).put(payload);
+    Segment segment = write(body.array());
+    openRecords.put(id, segment);
+    segment.openCount++;
+    return id;
+  }
+
+  /**
+   * Closes a pending delivery. Unknown ids (e.g. closed twice) are ignored.
+   */
+  synchronized void appendDone(long id) throws IOException {
+    Segment pendingSegment = openRecords.get(id);
+    if (pendingSegment == null) {
+      return;
+    }
+    ByteBuffer body = ByteBuffer.allocate(1 + 8);
+    body.put(DONE).putLong(id);
+    write(body.array());
+    openRecords.remove(id);
+    pendingSegment.openCount--;
+    deleteClosedSegments();
+  }
+
+  /**
+   * Returns the number of segment files, including the one being written.
+   */
+  synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Returns the ids of the deliveries whose pending record is in the oldest segment (which keeps the segment from being deleted). Empty if only
+   * the segment being written is left.
+   */
+  synchronized List<Long> getOldestSegmentIds() {
+    List<Long> ids = new ArrayList<>();
+    if (segments.size() > 1) {
+      Segment oldest = segments.getFirst();
+      openRecords.forEach((id, segment) -> {
+        if (segment == oldest) {
+          ids.add(id);
+        }
+      });
+    }
+    return ids;
+  }
+
+  /**
+   * Forces the records written since the last call to the disk.
+   */
+  synchronized void force() {
+    if (dirty) {
+      segments.getLast().buffer.force();
+      dirty = false;
+    }
+  }
+
+  private Segment write(byte[] body) throws IOException {
+    int recordSize = RECORD_HEADER_SIZE + body.length;
+    if (recordSize > segmentSize) {
+      throw new IOException("Outbox record of " + recordSize + " bytes does not fit into a journal segment of " + segmentSize + " bytes");
+    }
+    Segment segment = segments.getLast();
+    if (segment.buffer.remaining() < recordSize) {
+      force();
+      segment.buffer = null;
+      segment = startSegment();
+    }
+    segment.buffer.putInt(body.length).putInt(checksum(body)).put(body);
+    dirty = true;
+    return segment;
+  }
+
+  private Segment startSegment() throws IOException {
+    Path file = directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+    Segment segment = new Segment(file);
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.setLength(segmentSize);
+      // The mapping stays valid after the file is closed
+      segment.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+    segments.addLast(segment);
+    return segment;
+  }
+
+  private void deleteClosedSegments() {
+    while (segments.size() > 1 && segments.getFirst().openCount == 0) {
+      Segment segment = segments.removeFirst();
+      try {
+        Files.deleteIfExists(segment.file);
+      } catch (IOException e) {
+        // The segment only has closed records, it is harmless to replay it
+        log.warn("Could not delete outbox journal segment " + segment.file + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private static byte[] readBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static int checksum(byte[] body) {
+    CRC32 crc = new CRC32();
+    crc.update(body);
+    return (int) crc.getValue();
+  }
+
+  static class Record {
+
+    final long id;
+    final String url;
+    final byte[] payload;
+    final long createdAt;
+
+    Record(long id, String url, byte[] payload, long createdAt) {
+      this.id = id;
+      this.url = url;
+      this.payload = payload;
+      this.createdAt = createdAt;
+    }
+  }
+
+  private static class Segment {
+
+    private final Path file;
+    private final long number;
+    // Only set for the segment being written
+    private MappedByteBuffer buffer;
+    private int openCount;
+
+    Segment(Path file) {
+      this.file = file;
+      String name = file.getFileName().toString();
+      this.number = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+  }
+
+}
@@ -8,10 +8,12 @@
 package eu.arrowhead.core.eventhandler.filter;
 
 import eu.arrowhead.common.Utility;
+import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.EventFilter;
 import eu.arrowhead.common.exception.AuthException;
 import eu.arrowhead.common.filter.AccessControlFilter;
 import eu.arrowhead.common.messages.PublishEvent;
+import eu.arrowhead.common.messages.PublishEvents;
 import eu.arrowhead.common.misc.SecurityUtils;
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
@@ -35,10 +37,12 @@ public class EventHandlerACF extends AccessControlFilter {
       return clientCN.equalsIgnoreCase("sysop." + serverFields[1]);
     }
     if (requestTarget.contains("publish")) {
-      PublishEvent event = Utility.fromJson(requestJson, PublishEvent.class);
-      if (!clientFields[0].equalsIgnoreCase(event.getSource().getSystemName())) {
+      // The bulk publish request has one source for all of its events
+      ArrowheadSystem source = requestTarget.contains("publish/bulk") ? Utility.fromJson(requestJson, PublishEvents.class).getSource()
+                                                                      : Utility.fromJson(requestJson, PublishEvent.class).getSource();
+      if (!clientFields[0].equalsIgnoreCase(source.getSystemName())) {
         log.error("Source system name and cert common name do not match! Event publishing denied!");
-        throw new AuthException("Source system " + event.getSource().getSystemName() + " and cert common name (" + clientCN + ") do not match!");
+        throw new AuthException("Source system " + source.getSystemName() + " and cert common name (" + clientCN + ") do not match!");
       }
     } else if (requestTarget.endsWith("subscription")) {
       EventFilter filter = Utility.fromJson(requestJson, EventFilter.class);
@@ -8,6 +8,7 @@
 package eu.arrowhead.core.gatekeeper;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadCloud;
 import eu.arrowhead.common.database.Broker;
 import eu.arrowhead.common.database.NeighborCloud;
@@ -24,6 +25,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -45,21 +47,27 @@ public class GatekeeperApi {
   }
 
   /**
-   * Returns all the Neighbor Clouds from the database.
+   * Returns the Neighbor Clouds from the database, one page at a time (ordered by the id of their cloud, the next page starts after the
+   * <tt>X-Next-After-Id</tt> header of the response).
    *
    * @return List<NeighborCloud>
    */
   @GET
   @Path("neighborhood")
-  public List<NeighborCloud> getAllNeighborClouds() {
-
-    List<NeighborCloud> cloudList = dm.getAll(NeighborCloud.class, restrictionMap);
-    if (cloudList.isEmpty()) {
+  public Response getAllNeighborClouds(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
+    // The id of a NeighborCloud is its cloud, so the generic getPage can not be used
+    int pageLimit = DatabaseManager.getPageLimit(limit);
+    HashMap<String, Object> parameters = new HashMap<>();
+    parameters.put("afterId", afterId);
+    List<NeighborCloud> cloudList = dm.getAllByQuery("SELECT n FROM NeighborCloud n WHERE n.cloud.id > :afterId ORDER BY n.cloud.id",
+                                                     NeighborCloud.class, parameters, pageLimit);
+    if (cloudList.isEmpty() && afterId == 0) {
       log.info("GatekeeperApi:getAllNeighborClouds throws DataNotFoundException");
       throw new DataNotFoundException("NeighborClouds not found in the database.");
     }
 
-    return cloudList;
+    Long nextAfterId = Utility.getNextAfterId(cloudList, pageLimit, neighborCloud -> neighborCloud.getCloud().getId());
+    return Response.ok().entity(cloudList).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   /**
@@ -183,15 +191,16 @@ public class GatekeeperApi {
 
   @GET
   @Path("brokers")
-  public List<Broker> getAllBrokers() {
+  public Response getAllBrokers(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
 
-    List<Broker> brokerList = dm.getAll(Broker.class, restrictionMap);
-    if (brokerList.isEmpty()) {
+    List<Broker> brokerList = dm.getPage(Broker.class, restrictionMap, afterId, limit);
+    if (brokerList.isEmpty() && afterId == 0) {
       log.info("GatekeeperApi:getAllBrokers throws DataNotFoundException");
       throw new DataNotFoundException("Brokers not found in the database.");
     }
 
-    return brokerList;
+    Long nextAfterId = Utility.getNextAfterId(brokerList, DatabaseManager.getPageLimit(limit), Broker::getId);
+    return Response.ok().entity(brokerList).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @GET
@@ -9,6 +9,7 @@ package eu.arrowhead.core.gatekeeper;
 
 import eu.arrowhead.common.ArrowheadMain;
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.HttpClientPool;
 import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadCloud;
 import eu.arrowhead.common.database.ArrowheadService;
@@ -88,6 +89,7 @@ public class GatekeeperMain implements NeedsCoreSystemService {
     props = Utility.getProp();
     DatabaseManager.init();
     PropertyConfigurator.configure(props);
+    HttpClientPool.configure(props);
     USE_GATEWAY = props.getBooleanProperty("use_gateway", false);
     TIMEOUT = props.getIntProperty("timeout", 30000);
   }
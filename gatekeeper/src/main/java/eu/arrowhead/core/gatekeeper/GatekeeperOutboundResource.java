@@ -28,8 +28,12 @@ import eu.arrowhead.common.messages.OrchestrationForm;
 import eu.arrowhead.common.messages.OrchestrationResponse;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
@@ -93,32 +97,40 @@ public class GatekeeperOutboundResource {
     }
     log.info("Sending GSD poll request to " + cloudURIs.size() + " clouds.");
 
-    // Finalizing the URIs, process the responses
-    List<GSDAnswer> gsdAnswerList = new ArrayList<>();
-    Response response;
-    int i = 0;
+    // Finalizing the URIs, sending the polls to every cloud at once, so the slowest cloud (not the sum of all) limits the response time
+    Map<String, CompletableFuture<Response>> pendingPolls = new LinkedHashMap<>();
     for (String uri : cloudURIs) {
       uri = UriBuilder.fromPath(uri).path("gsd_poll").toString();
       try {
-        response = Utility.sendRequest(uri, "PUT", gsdPoll, GatekeeperMain.outboundClientContext);
+        pendingPolls.put(uri, Utility.sendRequestAsync(uri, "PUT", gsdPoll, GatekeeperMain.outboundClientContext));
+      } catch (ArrowheadException ex) {
+        CompletableFuture<Response> failedPoll = new CompletableFuture<>();
+        failedPoll.completeExceptionally(ex);
+        pendingPolls.put(uri, failedPoll);
       }
-      // We skip those that did not respond positively, add the rest to the result list
-      catch (ArrowheadException ex) {
-        // If it is the last iteration and we had no positive responses to the GSD, send exception instead
-        if (i == cloudURIs.size() - 1 && gsdAnswerList.isEmpty()) {
-          ex.printStackTrace();
-          log.error("GSD failed for all potential provider clouds! See stack traces for details in console output.");
-          throw new ArrowheadException("GSD failed for all potential provider clouds! The last exception message: " + ex.getMessage(),
-                                       ex.getErrorCode());
+    }
+
+    // Process the responses, skipping those that did not respond positively
+    List<GSDAnswer> gsdAnswerList = new ArrayList<>();
+    ArrowheadException lastException = null;
+    boolean anyResponse = false;
+    for (Map.Entry<String, CompletableFuture<Response>> poll : pendingPolls.entrySet()) {
+      String uri = poll.getKey();
+      Response response;
+      try {
+        response = poll.getValue().join();
+      } catch (CompletionException | CancellationException e) {
+        Throwable cause = e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof ArrowheadException) {
+          lastException = (ArrowheadException) cause;
         } else {
-          log.info("GSD request failed at: " + uri + " (moving to next cloud)");
-          ex.printStackTrace();
-          System.out.println("Continuing the GSD with the next cloud!");
-          continue;
+          lastException = new ArrowheadException(cause.getMessage(), Status.INTERNAL_SERVER_ERROR.getStatusCode(), cause);
         }
-      } finally {
-        i++;
+        log.info("GSD request failed at: " + uri + " (moving to next cloud)");
+        cause.printStackTrace();
+        continue;
       }
+      anyResponse = true;
 
       try {
         GSDAnswer answer = response.readEntity(GSDAnswer.class);
@@ -130,6 +142,12 @@ public class GatekeeperOutboundResource {
         log.info("GSDAnswer from " + uri + " is not valid! Skipping it from GSDResult!");
       }
     }
+    // If we had no positive responses to the GSD, send exception instead
+    if (!anyResponse && lastException != null) {
+      log.error("GSD failed for all potential provider clouds! See stack traces for details in console output.");
+      throw new ArrowheadException("GSD failed for all potential provider clouds! The last exception message: " + lastException.getMessage(),
+                                   lastException.getErrorCode());
+    }
 
     // Sending back the results. The orchestrator will validate the results (result list might be empty) and decide how to proceed.
     GSDResult gsdResult = new GSDResult(gsdAnswerList);
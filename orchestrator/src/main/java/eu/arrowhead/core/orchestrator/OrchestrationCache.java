@@ -0,0 +1,247 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.orchestrator;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ArrowheadCloud;
+import eu.arrowhead.common.database.ArrowheadService;
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.IntraCloudAuthorization;
+import eu.arrowhead.common.database.OrchestrationStore;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import eu.arrowhead.common.messages.OrchestrationResponse;
+import eu.arrowhead.common.messages.PreferredProvider;
+import eu.arrowhead.common.messages.ServiceRequestForm;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.apache.log4j.Logger;
+
+/**
+ * Caches the results of intra-cloud orchestrations, so identical <tt>ServiceRequestForm</tt>s (e.g. from devices re-orchestrating on every
+ * reconnect) do not run the whole Service Registry - Authorization - matchmaking - token generation process again. The cache key is the normalized
+ * request: requester System and Cloud, requested Service (definition, interfaces, metadata), the enabled orchestration flags, the preferred
+ * providers, the requested QoS and the commands.
+ * <p>
+ * Cached results are dropped after the configured TTL, and the whole cache is invalidated when the Orchestration Store is changed through the
+ * Orchestrator, or when a periodic check detects that the Service Registry, Authorization or Orchestration Store tables were changed by another
+ * Core System (these systems share the database). The periodic check detects inserts and deletes (row count and highest id), in-place updates of
+ * existing rows are only picked up when the TTL expires.
+ * <p>
+ * Inter-cloud orchestrations (and the ones which ping the providers or use QoS reservation) are never cached.
+ */
+public final class OrchestrationCache {
+
+  private static final Logger log = Logger.getLogger(OrchestrationCache.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+  private static final List<String> uncacheableFlags = Arrays.asList("externalServiceRequest", "triggerInterCloud", "enableInterCloud",
+                                                                     "pingProviders", "enableQoS");
+  private static final List<Class<?>> watchedTables = Arrays.asList(ServiceRegistryEntry.class, IntraCloudAuthorization.class,
+                                                                    OrchestrationStore.class, ArrowheadSystem.class, ArrowheadService.class);
+
+  private static final Map<List<Object>, CachedResponse> cache = new ConcurrentHashMap<>();
+  // Incremented on every invalidation, so results computed before an invalidation are not put into the cache after it
+  private static final AtomicLong generation = new AtomicLong();
+  private static volatile List<List<Object>> databaseMarker;
+
+  private static final LongAdder hits = new LongAdder();
+  private static final LongAdder misses = new LongAdder();
+  private static final LongAdder expirations = new LongAdder();
+  private static final LongAdder invalidations = new LongAdder();
+  private static final LongAdder hitAgeTotal = new LongAdder();
+  private static final AtomicLong hitAgeMax = new AtomicLong();
+
+  private OrchestrationCache() throws AssertionError {
+    throw new AssertionError("OrchestrationCache is a non-instantiable class");
+  }
+
+  /**
+   * Returns the cached result of an identical request, or runs the orchestration and caches its result if the request can be cached.
+   */
+  static OrchestrationResponse getOrCompute(ServiceRequestForm srf, Supplier<OrchestrationResponse> orchestration) {
+    if (OrchestratorMain.CACHE_TTL <= 0 || !isCacheable(srf)) {
+      return orchestration.get();
+    }
+
+    // The key has to be created before the orchestration, because the Store orchestration can modify the request
+    List<Object> key = createKey(srf);
+    long now = System.currentTimeMillis();
+    CachedResponse cached = cache.get(key);
+    if (cached != null) {
+      if (cached.expiresAt > now) {
+        long age = now - cached.createdAt;
+        hits.increment();
+        hitAgeTotal.add(age);
+        hitAgeMax.accumulateAndGet(age, Math::max);
+        log.debug("Orchestration result served from the cache, age: " + age + " ms");
+        return cached.response;
+      }
+      cache.remove(key, cached);
+      expirations.increment();
+    }
+    misses.increment();
+
+    long startGeneration = generation.get();
+    List<PreferredProvider> preferredProviders = srf.getPreferredProviders();
+    OrchestrationResponse response = orchestration.get();
+
+    // The Store orchestration replaces the preferred providers when it tries an inter-cloud Store entry, these results are not cached
+    if (srf.getPreferredProviders() == preferredProviders && generation.get() == startGeneration) {
+      if (cache.size() >= OrchestratorMain.CACHE_MAX_ENTRIES) {
+        removeExpired();
+      }
+      if (cache.size() < OrchestratorMain.CACHE_MAX_ENTRIES) {
+        now = System.currentTimeMillis();
+        cache.put(key, new CachedResponse(response, now, now + TimeUnit.SECONDS.toMillis(OrchestratorMain.CACHE_TTL)));
+      }
+    }
+    return response;
+  }
+
+  /**
+   * Drops every cached orchestration result.
+   */
+  public static void invalidateAll(String reason) {
+    generation.incrementAndGet();
+    if (!cache.isEmpty()) {
+      log.info("Orchestration cache invalidated (" + cache.size() + " entries): " + reason);
+    }
+    cache.clear();
+    invalidations.increment();
+  }
+
+  /**
+   * Checks whether the tables the cached results depend on were changed since the last check, and invalidates the cache if they were. Called
+   * periodically by the Orchestrator.
+   */
+  static void checkForChanges() {
+    List<List<Object>> marker = new ArrayList<>(watchedTables.size());
+    try {
+      for (Class<?> table : watchedTables) {
+        marker.add(dm.getRowCountAndMaxId(table));
+      }
+    } catch (RuntimeException e) {
+      // The cache can not be validated without the database
+      invalidateAll("database change check failed");
+      return;
+    }
+
+    List<List<Object>> previousMarker = databaseMarker;
+    databaseMarker = marker;
+    if (previousMarker != null && !previousMarker.equals(marker)) {
+      invalidateAll("Service Registry, Authorization or Orchestration Store change detected");
+    }
+  }
+
+  /**
+   * Returns the hit ratio and the staleness (age of the served results in milliseconds) of the cache, along with the raw counters.
+   */
+  public static Map<String, Object> getMetrics() {
+    long hitCount = hits.sum();
+    long missCount = misses.sum();
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("entries", cache.size());
+    metrics.put("hits", hitCount);
+    metrics.put("misses", missCount);
+    metrics.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+    metrics.put("expirations", expirations.sum());
+    metrics.put("invalidations", invalidations.sum());
+    metrics.put("averageHitAgeMillis", hitCount == 0 ? 0L : hitAgeTotal.sum() / hitCount);
+    metrics.put("maxHitAgeMillis", hitAgeMax.get());
+    return metrics;
+  }
+
+  private static boolean isCacheable(ServiceRequestForm srf) {
+    for (String flag : uncacheableFlags) {
+      if (srf.getOrchestrationFlags().getOrDefault(flag, false)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void removeExpired() {
+    long now = System.currentTimeMillis();
+    cache.values().removeIf(cached -> cached.expiresAt <= now);
+  }
+
+  private static List<Object> createKey(ServiceRequestForm srf) {
+    List<Object> key = new ArrayList<>();
+    key.add(systemKey(srf.getRequesterSystem()));
+    key.add(cloudKey(srf.getRequesterCloud()));
+
+    ArrowheadService service = srf.getRequestedService();
+    if (service == null) {
+      key.add(null);
+    } else {
+      key.add(Arrays.asList(service.getServiceDefinition(), sorted(service.getInterfaces()), sorted(service.getServiceMetadata())));
+    }
+
+    // Only the enabled flags matter, a missing flag is the same as a false one
+    TreeSet<String> enabledFlags = new TreeSet<>();
+    for (Entry<String, Boolean> flag : srf.getOrchestrationFlags().entrySet()) {
+      if (Boolean.TRUE.equals(flag.getValue())) {
+        enabledFlags.add(flag.getKey());
+      }
+    }
+    key.add(enabledFlags);
+
+    // The order of the preferred providers is kept, since it is their priority order
+    List<Object> preferredProviders = new ArrayList<>();
+    if (srf.getPreferredProviders() != null) {
+      for (PreferredProvider provider : srf.getPreferredProviders()) {
+        preferredProviders.add(Arrays.asList(systemKey(provider.getProviderSystem()), cloudKey(provider.getProviderCloud())));
+      }
+    }
+    key.add(preferredProviders);
+    key.add(sorted(srf.getRequestedQoS()));
+    key.add(sorted(srf.getCommands()));
+    return key;
+  }
+
+  private static List<Object> systemKey(ArrowheadSystem system) {
+    return system == null ? null : Arrays.asList(system.getSystemName(), system.getAddress(), system.getPort());
+  }
+
+  private static List<Object> cloudKey(ArrowheadCloud cloud) {
+    return cloud == null ? null : Arrays.asList(cloud.getOperator(), cloud.getCloudName());
+  }
+
+  private static TreeSet<String> sorted(Collection<String> values) {
+    return values == null ? new TreeSet<>() : new TreeSet<>(values);
+  }
+
+  private static TreeMap<String, String> sorted(Map<String, String> values) {
+    return values == null ? new TreeMap<>() : new TreeMap<>(values);
+  }
+
+  private static class CachedResponse {
+
+    private final OrchestrationResponse response;
+    private final long createdAt;
+    private final long expiresAt;
+
+    CachedResponse(OrchestrationResponse response, long createdAt, long expiresAt) {
+      this.response = response;
+      this.createdAt = createdAt;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+}
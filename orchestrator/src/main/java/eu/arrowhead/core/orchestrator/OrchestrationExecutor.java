@@ -0,0 +1,177 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.orchestrator;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.UnavailableServerException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+
+/**
+ * Bounded worker pool used by the orchestration process to send independent requests to other Core Systems (Service Registry, Authorization)
+ * concurrently. Every fan-out is a <i>stage</i>: the submitted calls have to finish within the configured stage timeout, otherwise the
+ * unfinished calls are cancelled.
+ * <p>
+ * When the pool and its queue are both full, the submitting thread runs the call itself, so a burst of orchestration requests degrades back to the
+ * sequential behaviour instead of failing.
+ * <p>
+ * The orchestration requests themselves run on a separate pool, which caps the number of concurrent orchestrations. This way the web-server
+ * threads are released while the orchestration waits for the other Core Systems, and the orchestrations can not starve their own fan-out calls.
+ */
+final class OrchestrationExecutor {
+
+  private static final Logger log = Logger.getLogger(OrchestrationExecutor.class.getName());
+  private static final AtomicInteger threadCounter = new AtomicInteger();
+  private static final AtomicInteger orchestrationThreadCounter = new AtomicInteger();
+  private static final ThreadPoolExecutor pool = createPool();
+  private static final ThreadPoolExecutor orchestrationPool = createOrchestrationPool();
+
+  private OrchestrationExecutor() throws AssertionError {
+    throw new AssertionError("OrchestrationExecutor is a non-instantiable class");
+  }
+
+  private static ThreadPoolExecutor createPool() {
+    int threads = OrchestratorMain.WORKER_THREADS;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<>(OrchestratorMain.WORKER_QUEUE_SIZE), runnable -> {
+      Thread thread = new Thread(runnable, "orchestration-worker-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ThreadPoolExecutor createOrchestrationPool() {
+    int threads = OrchestratorMain.MAX_CONCURRENT_ORCHESTRATIONS;
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<>(OrchestratorMain.MAX_PENDING_ORCHESTRATIONS), runnable -> {
+      Thread thread = new Thread(runnable, "orchestration-" + orchestrationThreadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Runs a whole orchestration process in the background, and resumes the suspended request with its result (or exception). If the maximum number
+   * of concurrent orchestrations are running and the waiting queue is full too, the request is resumed with an {@link UnavailableServerException}.
+   */
+  static void runOrchestration(AsyncResponse asyncResponse, Supplier<Response> orchestration) {
+    try {
+      orchestrationPool.execute(() -> {
+        try {
+          asyncResponse.resume(orchestration.get());
+        } catch (RuntimeException e) {
+          asyncResponse.resume(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      log.error("Orchestration request rejected, " + OrchestratorMain.MAX_CONCURRENT_ORCHESTRATIONS + " orchestrations are already running");
+      asyncResponse.resume(new UnavailableServerException("The Orchestrator is overloaded, retry the request later.",
+                                                          Status.SERVICE_UNAVAILABLE.getStatusCode(), e));
+    }
+  }
+
+  static <T> Future<T> submit(Callable<T> task) {
+    return pool.submit(task);
+  }
+
+  /**
+   * Waits for all the given calls of a stage to finish, but at most until the stage deadline is reached. The results (or exceptions) of the calls
+   * can be read afterwards with {@link #getResult(Future)} and {@link #getFailure(Future)}.
+   *
+   * @param stage Name of the stage, only used for logging and in the error messages
+   * @param futures The calls submitted with {@link #submit(Callable)}
+   *
+   * @throws UnavailableServerException if the stage deadline passed before all the calls finished
+   */
+  static void awaitStage(String stage, List<? extends Future<?>> futures) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(OrchestratorMain.STAGE_TIMEOUT);
+    try {
+      for (Future<?> future : futures) {
+        try {
+          future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | CancellationException e) {
+          // Failed calls are inspected by the caller with getFailure
+        }
+      }
+    } catch (TimeoutException e) {
+      cancelAll(futures);
+      log.error(stage + " stage did not finish in " + OrchestratorMain.STAGE_TIMEOUT + " ms");
+      throw new UnavailableServerException("The " + stage + " stage of the orchestration did not finish in time.",
+                                           Status.GATEWAY_TIMEOUT.getStatusCode(), e);
+    } catch (InterruptedException e) {
+      cancelAll(futures);
+      Thread.currentThread().interrupt();
+      throw new ArrowheadException("Orchestration was interrupted during the " + stage + " stage.", e);
+    }
+  }
+
+  /**
+   * Returns the exception thrown by an already finished call, or null if the call completed normally. Unchecked exceptions are returned as they
+   * were thrown, so the usual {@link ArrowheadException} subclasses can be handled (or rethrown) by the caller.
+   */
+  static RuntimeException getFailure(Future<?> future) {
+    try {
+      future.get(0L, TimeUnit.NANOSECONDS);
+      return null;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        return (RuntimeException) cause;
+      }
+      return new ArrowheadException(cause.getMessage(), cause);
+    } catch (CancellationException e) {
+      return e;
+    } catch (TimeoutException e) {
+      return new ArrowheadException("Orchestration call result was read before the call finished.", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new ArrowheadException("Interrupted while reading the result of an orchestration call.", e);
+    }
+  }
+
+  /**
+   * Returns the result of an already finished call, rethrowing the exception of the call if it failed.
+   */
+  static <T> T getResult(Future<T> future) {
+    RuntimeException failure = getFailure(future);
+    if (failure != null) {
+      throw failure;
+    }
+    try {
+      return future.get(0L, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException | ExecutionException | TimeoutException e) {
+      // Can not happen, getFailure already checked the future
+      throw new ArrowheadException(e.getMessage(), e);
+    }
+  }
+
+  private static void cancelAll(List<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+}
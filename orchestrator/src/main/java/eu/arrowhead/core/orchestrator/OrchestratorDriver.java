@@ -13,12 +13,15 @@ import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.OrchestrationStore;
 import eu.arrowhead.common.database.ServiceRegistryEntry;
+import eu.arrowhead.common.exception.ArrowheadException;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.messages.GSDAnswer;
 import eu.arrowhead.common.messages.GSDRequestForm;
 import eu.arrowhead.common.messages.GSDResult;
 import eu.arrowhead.common.messages.ICNRequestForm;
 import eu.arrowhead.common.messages.ICNResult;
+import eu.arrowhead.common.messages.IntraCloudAuthBatchRequest;
+import eu.arrowhead.common.messages.IntraCloudAuthBatchResponse;
 import eu.arrowhead.common.messages.IntraCloudAuthRequest;
 import eu.arrowhead.common.messages.IntraCloudAuthResponse;
 import eu.arrowhead.common.messages.OrchestrationForm;
@@ -31,12 +34,14 @@ import eu.arrowhead.common.messages.TokenGenHelper;
 import eu.arrowhead.common.messages.TokenGenerationRequest;
 import eu.arrowhead.common.messages.TokenGenerationResponse;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriBuilder;
@@ -138,6 +143,42 @@ final class OrchestratorDriver {
     return authorizedSystems;
   }
 
+  /**
+   * Batch version of {@link #queryAuthorization(ArrowheadSystem, ArrowheadService, Set)}: sends all the given authorization checks to the
+   * Authorization Core System in one request.
+   *
+   * @param requests The consumer/service/providers combinations to check
+   *
+   * @return the authorized provider <tt>ArrowheadSystem</tt>s for each request, in the same order as the requests. A set is empty if none of the
+   *     providers of the request are authorized (no exception is thrown in this case).
+   */
+  static List<Set<ArrowheadSystem>> queryAuthorizationBatch(List<IntraCloudAuthRequest> requests) {
+    // Compiling the URI and the request payload
+    String uri = UriBuilder.fromPath(OrchestratorMain.getAuthControlUri()).path("intracloud").path("batch").toString();
+
+    // Sending the request, parsing the returned result
+    Response response = Utility.sendRequest(uri, "PUT", new IntraCloudAuthBatchRequest(requests));
+    IntraCloudAuthBatchResponse batchResponse = response.readEntity(IntraCloudAuthBatchResponse.class);
+    if (batchResponse.getResponses().size() != requests.size()) {
+      throw new ArrowheadException("Authorization batch response contains " + batchResponse.getResponses().size() + " results instead of " + requests
+          .size());
+    }
+
+    List<Set<ArrowheadSystem>> authorizedSystems = new ArrayList<>(requests.size());
+    for (IntraCloudAuthResponse authResponse : batchResponse.getResponses()) {
+      Set<ArrowheadSystem> systems = new HashSet<>();
+      for (Map.Entry<ArrowheadSystem, Boolean> entry : authResponse.getAuthorizationMap().entrySet()) {
+        if (entry.getValue()) {
+          systems.add(entry.getKey());
+        }
+      }
+      authorizedSystems.add(systems);
+    }
+
+    log.info("queryAuthorizationBatch is done for " + requests.size() + " requests");
+    return authorizedSystems;
+  }
+
   /**
    * Filters out all the entries of the given <tt>ServiceRegistryEntry</tt> list, which does not contain a preferred local <tt>ArrowheadSystem</tt>.
    * This method is called when the <i>onlyPreferred</i> orchestration flag is set to true.
@@ -280,25 +321,37 @@ final class OrchestratorDriver {
 
     // If true, the Orchestration Store was queried for default entries, meaning the service is different for each store entry
     if (srf.getRequestedService() == null) {
+      /* The SR queries of the store entries are independent of each other, so all of them are sent out at once, while the Authorization checks
+         of every entry are sent in 1 batch request */
+      List<Future<List<ServiceRegistryEntry>>> srFutures = new ArrayList<>(entryList.size());
+      List<IntraCloudAuthRequest> authRequests = new ArrayList<>(entryList.size());
       for (OrchestrationStore entry : entryList) {
+        srFutures.add(OrchestrationExecutor.submit(
+            () -> queryServiceRegistry(entry.getService(), orchestrationFlags.get("metadataSearch"), orchestrationFlags.get("pingProviders"))));
+        authRequests.add(new IntraCloudAuthRequest(entry.getConsumer(), Collections.singleton(entry.getProviderSystem()), entry.getService()));
+      }
+      Future<List<Set<ArrowheadSystem>>> authFuture = OrchestrationExecutor.submit(() -> queryAuthorizationBatch(authRequests));
+      List<Future<?>> stage = new ArrayList<>(srFutures);
+      stage.add(authFuture);
+      OrchestrationExecutor.awaitStage("Store SR-Auth cross-check", stage);
+      List<Set<ArrowheadSystem>> authResults = OrchestrationExecutor.getResult(authFuture);
+
+      for (int i = 0; i < entryList.size(); i++) {
+        OrchestrationStore entry = entryList.get(i);
         try {
-          // Querying the Service Registry for the current service
-          List<ServiceRegistryEntry> serviceList = OrchestratorDriver
-              .queryServiceRegistry(entry.getService(), orchestrationFlags.get("metadataSearch"), orchestrationFlags.get("pingProviders"));
           // Compiling the systems that provide the current service + filtering service list based on providers (to set port and metadata later)
-          for (ServiceRegistryEntry srEntry : serviceList) {
-            providerSystemsFromSR.add(srEntry.getProvider());
+          boolean providerFromSR = false;
+          for (ServiceRegistryEntry srEntry : OrchestrationExecutor.getResult(srFutures.get(i))) {
             if (srEntry.getProvider().equals(entry.getProviderSystem())) {
+              providerFromSR = true;
               srList.add(srEntry);
             }
           }
-
-          // Querying the Authorization to see if the provider system is authorized for this servicing or not
-          providerSystemsFromAuth = OrchestratorDriver
-              .queryAuthorization(entry.getConsumer(), entry.getService(), Collections.singleton(entry.getProviderSystem()));
+          // Checking if the provider system is authorized for this servicing or not
+          providerSystemsFromAuth = authResults.get(i);
 
           // Remove the Store entry from the list, if the SR or Auth crosscheck fails
-          if (!providerSystemsFromSR.contains(entry.getProviderSystem()) || !providerSystemsFromAuth.contains(entry.getProviderSystem())) {
+          if (!providerFromSR || !providerSystemsFromAuth.contains(entry.getProviderSystem())) {
             toRemove.add(entry);
           }
         } catch (DataNotFoundException e) {
@@ -310,14 +363,6 @@ final class OrchestratorDriver {
     // Otherwise the service is fixed and we only need 1 SR and Auth query
     else {
       try {
-        // Querying the Service Registry for the service
-        srList = OrchestratorDriver
-            .queryServiceRegistry(srf.getRequestedService(), orchestrationFlags.get("metadataSearch"), orchestrationFlags.get("pingProviders"));
-        // Compiling the systems that provide the service
-        for (ServiceRegistryEntry srEntry : srList) {
-          providerSystemsFromSR.add(srEntry.getProvider());
-        }
-
         //Compiling the list of intra-cloud provider systems from the store list for the auth query
         Set<ArrowheadSystem> localProviderSystems = new HashSet<>();
         for (OrchestrationStore entry : entryList) {
@@ -325,8 +370,20 @@ final class OrchestratorDriver {
             localProviderSystems.add(entry.getProviderSystem());
           }
         }
-        // Querying the Authorization
-        providerSystemsFromAuth = OrchestratorDriver.queryAuthorization(srf.getRequesterSystem(), srf.getRequestedService(), localProviderSystems);
+
+        // Querying the Service Registry and the Authorization at the same time
+        Future<List<ServiceRegistryEntry>> srFuture = OrchestrationExecutor.submit(
+            () -> queryServiceRegistry(srf.getRequestedService(), orchestrationFlags.get("metadataSearch"), orchestrationFlags.get("pingProviders")));
+        Future<Set<ArrowheadSystem>> authFuture = OrchestrationExecutor
+            .submit(() -> queryAuthorization(srf.getRequesterSystem(), srf.getRequestedService(), localProviderSystems));
+        OrchestrationExecutor.awaitStage("Store SR-Auth cross-check", Arrays.asList(srFuture, authFuture));
+        srList = OrchestrationExecutor.getResult(srFuture);
+        providerSystemsFromAuth = OrchestrationExecutor.getResult(authFuture);
+
+        // Compiling the systems that provide the service
+        for (ServiceRegistryEntry srEntry : srList) {
+          providerSystemsFromSR.add(srEntry.getProvider());
+        }
 
         // Loop over the store entries and remove an entry, if the SR or Auth crosscheck fails
         for (OrchestrationStore entry : entryList) {
@@ -532,17 +589,29 @@ final class OrchestratorDriver {
     /* Getting a list of service - providers pairs, where the service contains the security - token metadata. This ensures that token generation is
        invoked the minimum amount of times */
     List<TokenGenHelper> tokenGenHelpers = TokenGenHelper.convertOfList(ofList);
+    if (tokenGenHelpers.isEmpty()) {
+      return ofList;
+    }
+
+    // The token generation requests of the different services are independent, so they are sent out at once
+    String tokenGenUri = OrchestratorMain.getTokenGenUri();
+    List<Future<TokenGenerationResponse>> futures = new ArrayList<>(tokenGenHelpers.size());
     for (TokenGenHelper helper : tokenGenHelpers) {
       // Compiling the request payload
       TokenGenerationRequest tokenRequest = new TokenGenerationRequest(srf.getRequesterSystem(), srf.getRequesterCloud(), helper.getProviders(),
                                                                        helper.getService(), 0);
       // Sending the token generation request, parsing the response
-      Response authResponse = Utility.sendRequest(OrchestratorMain.getTokenGenUri(), "PUT", tokenRequest);
-      TokenGenerationResponse tokenResponse = authResponse.readEntity(TokenGenerationResponse.class);
+      futures.add(OrchestrationExecutor.submit(
+          () -> Utility.sendRequest(tokenGenUri, "PUT", tokenRequest).readEntity(TokenGenerationResponse.class)));
+    }
+    OrchestrationExecutor.awaitStage("token generation", futures);
 
+    // The OrchestrationForms are only updated on this thread, after all the responses arrived
+    for (Future<TokenGenerationResponse> future : futures) {
+      TokenGenerationResponse tokenResponse = OrchestrationExecutor.getResult(future);
       if (tokenResponse != null && tokenResponse.getTokenData() != null && tokenResponse.getTokenData().size() > 0) {
         TokenGenHelper.updateFormsWithTokens(ofList, tokenResponse.getTokenData());
-        tokenCount = tokenResponse.getTokenData().size();
+        tokenCount += tokenResponse.getTokenData().size();
       }
     }
 
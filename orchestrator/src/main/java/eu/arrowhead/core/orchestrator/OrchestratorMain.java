@@ -30,6 +30,14 @@ public class OrchestratorMain extends ArrowheadMain implements NeedsCoreSystemSe
 
   static boolean USE_GATEKEEPER = true;
   static String SR_BASE_URI;
+  static int WORKER_THREADS = 16;
+  static int WORKER_QUEUE_SIZE = 256;
+  static long STAGE_TIMEOUT = 10000L;
+  static int MAX_CONCURRENT_ORCHESTRATIONS = 64;
+  static int MAX_PENDING_ORCHESTRATIONS = 128;
+  static int CACHE_TTL = 30;
+  static int CACHE_MAX_ENTRIES = 10000;
+  static int CACHE_CHECK_INTERVAL = 5;
   private static String AUTH_CONTROL_URI;
   private static String TOKEN_GEN_URI;
   private static String GSD_SERVICE_URI;
@@ -37,6 +45,17 @@ public class OrchestratorMain extends ArrowheadMain implements NeedsCoreSystemSe
   private static final String GET_CORE_SYSTEM_URLS_ERROR_MESSAGE = "The Orchestrator core system has not acquired the addresses of the "
       + "Authorization and Gatekeeper core systems yet from the Service Registry. Wait 15 seconds and retry your request";
 
+  {
+    WORKER_THREADS = props.getIntProperty("orch_worker_threads", WORKER_THREADS);
+    WORKER_QUEUE_SIZE = props.getIntProperty("orch_worker_queue_size", WORKER_QUEUE_SIZE);
+    STAGE_TIMEOUT = props.getIntProperty("orch_stage_timeout", (int) STAGE_TIMEOUT);
+    MAX_CONCURRENT_ORCHESTRATIONS = props.getIntProperty("orch_max_concurrent", MAX_CONCURRENT_ORCHESTRATIONS);
+    MAX_PENDING_ORCHESTRATIONS = props.getIntProperty("orch_max_pending", MAX_PENDING_ORCHESTRATIONS);
+    CACHE_TTL = props.getIntProperty("orch_cache_ttl", CACHE_TTL);
+    CACHE_MAX_ENTRIES = props.getIntProperty("orch_cache_max_entries", CACHE_MAX_ENTRIES);
+    CACHE_CHECK_INTERVAL = props.getIntProperty("orch_cache_check_interval", CACHE_CHECK_INTERVAL);
+  }
+
   private OrchestratorMain(String[] args) {
     String[] packages = {"eu.arrowhead.common", "eu.arrowhead.core.orchestrator"};
     init(CoreSystem.ORCHESTRATOR, args, null, packages);
@@ -75,6 +94,15 @@ public class OrchestratorMain extends ArrowheadMain implements NeedsCoreSystemSe
     Timer timer = new Timer();
     //TODO period to default.conf here + gatekeeper
     timer.schedule(getServicesTask, 15L * 1000L, 60L * 60L * 1000L); //15 sec delay, 1 hour period
+    if (CACHE_TTL > 0) {
+      // Detects the Service Registry, Authorization and Store changes made by other Core Systems, to invalidate the orchestration cache
+      timer.schedule(new TimerTask() {
+        @Override
+        public void run() {
+          OrchestrationCache.checkForChanges();
+        }
+      }, 0L, CACHE_CHECK_INTERVAL * 1000L);
+    }
 
     listenForInput();
   }
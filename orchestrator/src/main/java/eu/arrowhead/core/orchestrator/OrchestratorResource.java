@@ -18,6 +18,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -46,47 +48,63 @@ public class OrchestratorResource {
   /**
    * This method initiates the correct orchestration process determined by orchestration flags in the <tt>ServiceRequestForm</tt>. The returned
    * response (can) consists a list of endpoints where the requester System can consume the requested Service.
+   * <p>
+   * The orchestration runs asynchronously, the web-server thread is released until the orchestration finishes.
    *
    * @return OrchestrationResponse
    */
   @POST
-  public Response orchestrationProcess(@Valid ServiceRequestForm srf) {
-	  srf.validateCrossParameterConstraints();
+  public void orchestrationProcess(@Valid ServiceRequestForm srf, @Suspended AsyncResponse asyncResponse) {
+    OrchestrationExecutor.runOrchestration(asyncResponse, () -> orchestrate(srf));
+  }
+
+  /**
+   * Synchronous orchestration process behind {@link #orchestrationProcess(ServiceRequestForm, AsyncResponse)}, also used by the legacy support
+   * resource.
+   */
+  public Response orchestrate(ServiceRequestForm srf) {
+    srf.validateCrossParameterConstraints();
 
-	    OrchestrationResponse orchResponse;
-	    if (srf.getOrchestrationFlags().getOrDefault("externalServiceRequest", false)) {
-	      log.info("Received an externalServiceRequest.");
-	      orchResponse = OrchestratorService.externalServiceRequest(srf);
-	    } else if (srf.getOrchestrationFlags().getOrDefault("triggerInterCloud", false)) {
-	      log.info("Received a triggerInterCloud request.");
-	      orchResponse = OrchestratorService.triggerInterCloud(srf);
-	    } else if (!srf.getOrchestrationFlags().getOrDefault("overrideStore", false)) { //overrideStore == false
-	      log.info("Received an orchestrationFromStore request.");
-	      orchResponse = OrchestratorService.orchestrationFromStore(srf);
-	    } else {
-	      log.info("Received a dynamicOrchestration request.");
-	      orchResponse = OrchestratorService.dynamicOrchestration(srf);
-	    }
+    // Identical intra-cloud requests are answered from the cache
+    OrchestrationResponse orchResponse = OrchestrationCache.getOrCompute(srf, () -> selectOrchestration(srf));
 
-	    log.info("The orchestration process returned with " + orchResponse.getResponse().size() + " orchestration forms.");
-	    return Response.status(Status.OK).entity(orchResponse).build();
+    log.info("The orchestration process returned with " + orchResponse.getResponse().size() + " orchestration forms.");
+    return Response.status(Status.OK).entity(orchResponse).build();
   }
-  
+
+  private OrchestrationResponse selectOrchestration(ServiceRequestForm srf) {
+    if (srf.getOrchestrationFlags().getOrDefault("externalServiceRequest", false)) {
+      log.info("Received an externalServiceRequest.");
+      return OrchestratorService.externalServiceRequest(srf);
+    } else if (srf.getOrchestrationFlags().getOrDefault("triggerInterCloud", false)) {
+      log.info("Received a triggerInterCloud request.");
+      return OrchestratorService.triggerInterCloud(srf);
+    } else if (!srf.getOrchestrationFlags().getOrDefault("overrideStore", false)) { //overrideStore == false
+      log.info("Received an orchestrationFromStore request.");
+      return OrchestratorService.orchestrationFromStore(srf);
+    } else {
+      log.info("Received a dynamicOrchestration request.");
+      return OrchestratorService.dynamicOrchestration(srf);
+    }
+  }
+
   /**
    * Default Store orchestration process offered on a GET request, where the requester only has the consumer system ID.
    */
   @GET
   @Path("{systemId}")
-  public Response storeOrchestrationProcess(@PathParam("systemId") long systemId) {
-	  ArrowheadSystem requesterSystem = new ArrowheadSystemApi().getSystem(systemId);
-	    log.info("Received a GET Store orchestration from: " + requesterSystem.getSystemName());
+  public void storeOrchestrationProcess(@PathParam("systemId") long systemId, @Suspended AsyncResponse asyncResponse) {
+    OrchestrationExecutor.runOrchestration(asyncResponse, () -> {
+      ArrowheadSystem requesterSystem = new ArrowheadSystemApi().getSystem(systemId);
+      log.info("Received a GET Store orchestration from: " + requesterSystem.getSystemName());
 
-	    ServiceRequestForm srf = new ServiceRequestForm.Builder(requesterSystem).build();
-	    srf.validateCrossParameterConstraints();
-	    OrchestrationResponse orchResponse = OrchestratorService.orchestrationFromStore(srf);
+      ServiceRequestForm srf = new ServiceRequestForm.Builder(requesterSystem).build();
+      srf.validateCrossParameterConstraints();
+      OrchestrationResponse orchResponse = OrchestrationCache.getOrCompute(srf, () -> OrchestratorService.orchestrationFromStore(srf));
 
-	    log.info("Default store orchestration returned with " + orchResponse.getResponse().size() + " orchestration forms.");
-	    return Response.status(Status.OK).entity(orchResponse).build();
+      log.info("Default store orchestration returned with " + orchResponse.getResponse().size() + " orchestration forms.");
+      return Response.status(Status.OK).entity(orchResponse).build();
+    });
   }
 
 }
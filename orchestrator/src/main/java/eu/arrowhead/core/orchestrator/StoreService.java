@@ -19,18 +19,17 @@ public final class StoreService {
 
 
   private static final DatabaseManager dm = DatabaseManager.getInstance();
-  private static final HashMap<String, Object> restrictionMap = new HashMap<>();
 
   /**
    * This method returns the active Orchestration Store entries for a consumer.
    */
   public static List<OrchestrationStore> getDefaultStoreEntries(ArrowheadSystem consumer) {
-    restrictionMap.clear();
     ArrowheadSystem savedConsumer = getConsumerSystem(consumer);
     if (savedConsumer == null) {
       return new ArrayList<>();
     }
 
+    HashMap<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("consumer", savedConsumer);
     restrictionMap.put("defaultEntry", true);
     return dm.getAll(OrchestrationStore.class, restrictionMap);
@@ -40,7 +39,6 @@ public final class StoreService {
    * This method returns a list of Orchestration Store entries specified by the consumer system and the requested service.
    */
   public static List<OrchestrationStore> getStoreEntries(ArrowheadSystem consumer, ArrowheadService service) {
-    restrictionMap.clear();
     ArrowheadSystem savedConsumer = getConsumerSystem(consumer);
     ArrowheadService savedService = getRequestedService(service.getServiceDefinition());
     if (savedConsumer == null || savedService == null) {
@@ -53,13 +51,13 @@ public final class StoreService {
       }
     }
 
+    HashMap<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("consumer", savedConsumer);
     restrictionMap.put("service", savedService);
     return dm.getAll(OrchestrationStore.class, restrictionMap);
   }
 
   public static List<OrchestrationStore> getStoreEntries(ArrowheadService service) {
-    restrictionMap.clear();
     ArrowheadService savedService = getRequestedService(service.getServiceDefinition());
 
     if (!savedService.getInterfaces().isEmpty()) {
@@ -68,6 +66,7 @@ public final class StoreService {
       }
     }
 
+    HashMap<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("service", savedService);
     return dm.getAll(OrchestrationStore.class, restrictionMap);
   }
@@ -112,8 +111,7 @@ public final class StoreService {
    */
   @SuppressWarnings("unused")
   public static List<OrchestrationStore> getAllStoreEntries() {
-    restrictionMap.clear();
-    return dm.getAll(OrchestrationStore.class, restrictionMap);
+    return dm.getAll(OrchestrationStore.class, null);
   }
 
 }
@@ -0,0 +1,39 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.orchestrator.api;
+
+import eu.arrowhead.core.orchestrator.OrchestrationCache;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path("orchestrator/mgmt/cache")
+@Produces(MediaType.APPLICATION_JSON)
+public class OrchestrationCacheApi {
+
+  /**
+   * Returns the hit ratio and staleness metrics of the orchestration result cache.
+   */
+  @GET
+  public Response getCacheMetrics() {
+    return Response.ok().entity(OrchestrationCache.getMetrics()).build();
+  }
+
+  /**
+   * Drops all the cached orchestration results (e.g. after changing the Service Registry or the Authorization rules directly in the database).
+   */
+  @DELETE
+  public Response invalidateCache() {
+    OrchestrationCache.invalidateAll("invalidated through the management API");
+    return Response.ok().build();
+  }
+
+}
@@ -8,6 +8,7 @@
 package eu.arrowhead.core.orchestrator.api;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadCloud;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
@@ -16,11 +17,14 @@ import eu.arrowhead.common.exception.BadPayloadException;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.messages.OrchestrationStorePriorities;
 import eu.arrowhead.common.messages.OrchestrationStoreQuery;
+import eu.arrowhead.core.orchestrator.OrchestrationCache;
 import eu.arrowhead.core.orchestrator.StoreService;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.validation.Valid;
@@ -32,6 +36,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -73,23 +78,26 @@ public class StoreApi {
   }
 
   /**
-   * Returns all the entries of the Orchestration Store.
+   * Returns the entries of the Orchestration Store, one page at a time: at most <tt>limit</tt> entries with a greater id than <tt>afterId</tt>
+   * (ordered by id in the database, then sorted within the page). The next page starts after the highest id of the previous page, which is sent
+   * in the <i>X-Next-After-Id</i> header if the page is full.
    *
    * @return List<OrchestrationStore>
    */
   @GET
   @Path("all")
-  public List<OrchestrationStore> getAllStoreEntries() {
+  public Response getAllStoreEntries(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
 
-    List<OrchestrationStore> store = dm.getAll(OrchestrationStore.class, restrictionMap);
-    if (store.isEmpty()) {
+    List<OrchestrationStore> store = dm.getPage(OrchestrationStore.class, null, afterId, limit);
+    if (store.isEmpty() && afterId == 0) {
       log.info("getAllStoreEntries throws DataNotFoundException.");
       throw new DataNotFoundException("The Orchestration Store is empty.");
     }
 
+    Long nextAfterId = Utility.getNextAfterId(store, DatabaseManager.getPageLimit(limit), OrchestrationStore::getId);
     Collections.sort(store);
     log.info("getAllStoreEntries successfully returns.");
-    return store;
+    return Response.ok().entity(store).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   /**
@@ -158,6 +166,8 @@ public class StoreApi {
 
   public List<OrchestrationStore> addStoreEntriesGeneric(List<OrchestrationStore> storeEntries) {
     List<OrchestrationStore> store = new ArrayList<>();
+    // The new entries are saved together at the end, so duplicates within the list have to be detected here
+    Set<List<Object>> newEntryKeys = new HashSet<>();
     for (OrchestrationStore entry : storeEntries) {
       entry.validateCrossParameterConstraints();
       restrictionMap.clear();
@@ -202,7 +212,8 @@ public class StoreApi {
       restrictionMap.put("priority", entry.getPriority());
       restrictionMap.put("defaultEntry", entry.isDefaultEntry());
       OrchestrationStore storeEntry = dm.get(OrchestrationStore.class, restrictionMap);
-      if (storeEntry == null) {
+      List<Object> entryKey = Arrays.asList(service.getId(), consumer.getId(), entry.getPriority(), entry.isDefaultEntry());
+      if (storeEntry == null && newEntryKeys.add(entryKey)) {
         // Merge the service metadata map to the store attributes map, duplicate keys are handled with concatenated
         // values
         entry.getService().getServiceMetadata()
@@ -211,10 +222,13 @@ public class StoreApi {
         storeEntry = new OrchestrationStore(service, consumer, providerSystem, providerCloud, entry.getPriority(),
                                             entry.isDefaultEntry(), entry.getName(), LocalDateTime.now(),
                                             entry.getInstruction(), entry.getAttributes(), null);
-        storeEntry = dm.save(storeEntry);
         store.add(storeEntry);
       }
     }
+    if (!store.isEmpty()) {
+      dm.saveAll(store);
+      OrchestrationCache.invalidateAll("Orchestration Store entries added");
+    }
 
     log.info("addStoreEntries successfully returns. List size: " + store.size());
     return store;
@@ -242,6 +256,7 @@ public class StoreApi {
     } else {
       entry.setDefaultEntry(!entry.isDefaultEntry());
       dm.merge(entry);
+      OrchestrationCache.invalidateAll("Orchestration Store entry changed");
       log.info("toggleIsDefault successfully returns.");
       return Response.ok(entry).build();
     }
@@ -260,6 +275,7 @@ public class StoreApi {
         () -> new DataNotFoundException("OrchestrationStore entry not found with id: " + id));
     entry.updateEntryWith(updatedEntry);
     entry = dm.merge(entry);
+    OrchestrationCache.invalidateAll("Orchestration Store entry changed");
     log.info("updateStoreEntry successfully returns.");
     return Response.ok().entity(entry).build();
   }
@@ -274,6 +290,7 @@ public class StoreApi {
   public Response deleteEntry(@PathParam("id") long id) {
     return dm.get(OrchestrationStore.class, id).map(entry -> {
       dm.delete(entry);
+      OrchestrationCache.invalidateAll("Orchestration Store entry deleted");
       log.info("deleteStoreEntry successfully returns.");
       return Response.ok().build();
     }).<DataNotFoundException>orElseThrow(() -> {
@@ -298,14 +315,11 @@ public class StoreApi {
 
     restrictionMap.clear();
     restrictionMap.put("consumer", consumer);
-    List<OrchestrationStore> store = dm.getAll(OrchestrationStore.class, restrictionMap);
-    if (store.isEmpty()) {
+    if (dm.deleteWhere(OrchestrationStore.class, restrictionMap) == 0) {
       log.info("deleteEntries had no effect.");
       return Response.noContent().build();
     } else {
-      for (OrchestrationStore entry : store) {
-        dm.delete(entry);
-      }
+      OrchestrationCache.invalidateAll("Orchestration Store entries deleted");
 
       log.info("deleteEntries successfully returns.");
       return Response.ok().build();
@@ -323,7 +337,8 @@ public class StoreApi {
       int newPriority = prioritiesMap.getPriorities().get(entry.getId());
       entry.setPriority(newPriority);
     }
-    dm.save(storeList.toArray());
+    dm.saveAll(storeList);
+    OrchestrationCache.invalidateAll("Orchestration Store priorities changed");
     return Response.ok().entity(storeList).build();
   }
 
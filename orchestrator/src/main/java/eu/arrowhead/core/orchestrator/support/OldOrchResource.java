@@ -43,7 +43,7 @@ public class OldOrchResource {
                                                                    .preferredProviders(preferredProviders).build();
 
     OrchestratorResource orchResource = new OrchestratorResource();
-    Response response = orchResource.orchestrationProcess(srf);
+    Response response = orchResource.orchestrate(srf);
     OrchestrationResponseSupport orchResponseSupport = new OrchestrationResponseSupport((OrchestrationResponse) response.getEntity());
     return Response.status(response.getStatus()).entity(orchResponseSupport).build();
   }
@@ -40,7 +40,6 @@ final class QoSManagerService {
   private static final VerifierAlgorithmFactory algorithmFactory = VerifierAlgorithmFactory.getInstance();
   private static final DriversFactory driverFactory = DriversFactory.getInstance();
   private static final DatabaseManager dm = DatabaseManager.getInstance();
-  private static final HashMap<String, Object> restrictionMap = new HashMap<>();
 
   private QoSManagerService() throws AssertionError {
     throw new AssertionError("QoSManagerService is a non-instantiable class");
@@ -94,7 +93,7 @@ final class QoSManagerService {
   // request in a blocking for loop
 
   private static NetworkDevice getNetworkDeviceFromSystem(ArrowheadSystem system) {
-    restrictionMap.clear();
+    Map<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("systemName", system.getSystemName());
     ArrowheadSystem retrievedSystem = dm.get(ArrowheadSystem.class, restrictionMap);
 
@@ -107,7 +106,7 @@ final class QoSManagerService {
 
 
   private static List<ResourceReservation> getReservationsFromSystem(ArrowheadSystem system) {
-    restrictionMap.clear();
+    Map<String, Object> restrictionMap = new HashMap<>();
     restrictionMap.put("systemName", system.getSystemName());
     ArrowheadSystem retrievedSystem = dm.get(ArrowheadSystem.class, restrictionMap);
 
@@ -114,6 +114,8 @@ CREATE TABLE `event_filter` (
   `end_date` datetime(6) DEFAULT NULL,
   `event_type` varchar(255) NOT NULL,
   `match_metadata` char(1) DEFAULT NULL,
+  `max_batch_linger` int(11) DEFAULT NULL,
+  `max_batch_size` int(11) DEFAULT NULL,
   `notify_uri` varchar(255) DEFAULT NULL,
   `start_date` datetime(6) DEFAULT NULL,
   `consumer_system_id` bigint(20) NOT NULL,
@@ -313,6 +315,23 @@ CREATE TABLE `service_registry` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 /*!40101 SET character_set_client = @saved_cs_client */;
 
+--
+-- Table structure for table `service_registry_metadata`
+--
+
+DROP TABLE IF EXISTS `service_registry_metadata`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!40101 SET character_set_client = utf8 */;
+CREATE TABLE `service_registry_metadata` (
+  `service_registry_id` bigint(20) NOT NULL,
+  `metadata_value` varchar(255) DEFAULT NULL,
+  `metadata_key` varchar(255) NOT NULL,
+  PRIMARY KEY (`service_registry_id`,`metadata_key`),
+  KEY `IDXs0mh8fk5ht3kq6dqkl2b6bq5x` (`metadata_key`,`metadata_value`),
+  CONSTRAINT `FKq4w1d8c3v2xq5g0hv3bl1t9k2` FOREIGN KEY (`service_registry_id`) REFERENCES `service_registry` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `table_generator`
 --
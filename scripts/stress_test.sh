@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+
+# Concurrent smoke/stress test of a Core System endpoint (insecure mode). The same request is sent many times by parallel
+# clients, for each concurrency level the throughput is printed. The test fails if a response is not 2xx, or if the
+# responses differ from each other (so use a request whose answer does not change during the test).
+#
+# Usage: stress_test.sh <url> <method> [payload json file] [requests per level] [concurrency levels]
+#
+# Example, with a service registered in the Service Registry:
+#   echo '{"service":{"serviceDefinition":"IndoorTemperature","interfaces":["JSON"]},"version":1}' > sr_query.json
+#   ./stress_test.sh http://127.0.0.1:8442/serviceregistry/query PUT sr_query.json 2000 "1 2 4 8 16"
+#
+# To see how the throughput scales with the server threads, restart the Core System with different server_worker_threads
+# values in its config file (e.g. 1, 2, 4 and 8), and run the test again with the same arguments.
+
+url=${1}
+method=${2}
+payload=${3}
+requests=${4:-1000}
+levels=${5:-"1 2 4 8 16"}
+
+if [ -z "${url}" ] || [ -z "${method}" ]; then
+  echo "Usage: $0 <url> <method> [payload json file] [requests per level] [concurrency levels]"
+  exit 1
+fi
+if [ -n "${payload}" ] && [ ! -f "${payload}" ]; then
+  echo "Payload file ${payload} does not exist"
+  exit 1
+fi
+
+work_dir=$(mktemp -d)
+trap 'rm -rf "${work_dir}"' EXIT
+
+# Prints the status code of one request, the response body is saved for the comparison
+send_request() {
+  curl -s -o "${work_dir}/body_${1}" -w "%{http_code}\n" -X "${method}" -H "Content-Type: application/json" \
+    ${payload:+--data-binary "@${payload}"} "${url}"
+}
+export -f send_request
+export url method payload work_dir
+
+failed=0
+for concurrency in ${levels}; do
+  rm -f "${work_dir}"/body_*
+  start=$(date +%s%N)
+  codes=$(seq 1 "${requests}" | xargs -P "${concurrency}" -I{} bash -c 'send_request {}')
+  end=$(date +%s%N)
+
+  errors=$(echo "${codes}" | grep -vc '^2')
+  distinct=$(md5sum "${work_dir}"/body_* | awk '{print $1}' | sort -u | wc -l)
+  throughput=$(awk -v n="${requests}" -v ns="$((end - start))" 'BEGIN { printf "%.1f", n * 1000000000 / ns }')
+  echo "concurrency ${concurrency}: ${throughput} requests/s, ${errors} failed, ${distinct} different responses"
+
+  if [ "${errors}" -gt 0 ] || [ "${distinct}" -gt 1 ]; then
+    failed=1
+  fi
+done
+
+if [ ${failed} -ne 0 ]; then
+  echo "FAILED: some responses were errors or differed from the others"
+fi
+exit ${failed}
@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+
+# Write throughput benchmark of the batched database operations (DatabaseManager.saveOrUpdateAll and delete, JDBC batching and
+# the pooled table id generator), through the bulk register/remove API of the Service Registry (insecure mode). Every round
+# registers a list of new services for one provider in one request, then removes them, and prints the entries/s of both.
+#
+# Usage: write_benchmark.sh [service registry url] [entries per round] [rounds]
+# Example:
+#   ./write_benchmark.sh http://127.0.0.1:8442/serviceregistry 1000 5
+#
+# To compare settings, change hibernate.jdbc.batch_size in the hibernate.cfg.xml of the Service Registry (or the
+# INCREMENT_SIZE of PooledTableGenerator), rebuild and restart it, and run the benchmark again with the same arguments. The first
+# round also warms up the JVM and the connection pool, so compare the later rounds. At most bulk_max_entries entries are
+# accepted in one request.
+
+sr_url=${1:-"http://127.0.0.1:8442/serviceregistry"}
+entries=${2:-1000}
+rounds=${3:-5}
+
+work_dir=$(mktemp -d)
+trap 'rm -rf "${work_dir}"' EXIT
+
+# Prints the elapsed milliseconds of one bulk request, and the number of entries with the expected status in the answer
+send_bulk() {
+  local method=${1} path=${2} expected_status=${3}
+  local start end
+  start=$(date +%s%N)
+  curl -s -o "${work_dir}/response" -X "${method}" -H "Content-Type: application/json" --data-binary "@${work_dir}/payload" \
+    "${sr_url}/${path}"
+  end=$(date +%s%N)
+  echo "$(( (end - start) / 1000000 )) $(grep -Eo "\"status\" *: *${expected_status}" "${work_dir}/response" | wc -l)"
+}
+
+failed=0
+for round in $(seq 1 "${rounds}"); do
+  # New service definitions in every round (the provider is the same), so every round inserts the same amount of rows
+  {
+    echo "["
+    for i in $(seq 1 "${entries}"); do
+      [ "${i}" -gt 1 ] && echo ","
+      echo "{\"providedService\":{\"serviceDefinition\":\"benchmark_$$_${round}_${i}\",\"interfaces\":[\"JSON\"]},"
+      echo "\"provider\":{\"systemName\":\"write_benchmark\",\"address\":\"127.0.0.1\",\"port\":65000},\"serviceURI\":\"benchmark\"}"
+    done
+    echo "]"
+  } > "${work_dir}/payload"
+
+  read -r register_ms registered <<< "$(send_bulk POST register/bulk 201)"
+  read -r remove_ms removed <<< "$(send_bulk PUT remove/bulk 200)"
+  register_rate=$(awk -v n="${registered}" -v ms="${register_ms}" 'BEGIN { printf "%.1f", (ms > 0 ? n * 1000 / ms : 0) }')
+  remove_rate=$(awk -v n="${removed}" -v ms="${remove_ms}" 'BEGIN { printf "%.1f", (ms > 0 ? n * 1000 / ms : 0) }')
+  echo "round ${round}: registered ${registered}/${entries} in ${register_ms} ms (${register_rate} entries/s)," \
+       "removed ${removed}/${entries} in ${remove_ms} ms (${remove_rate} entries/s)"
+
+  if [ "${registered}" -ne "${entries}" ] || [ "${removed}" -ne "${entries}" ]; then
+    failed=1
+  fi
+done
+
+if [ ${failed} -ne 0 ]; then
+  echo "FAILED: not every entry was registered and removed, see the Service Registry log"
+fi
+exit ${failed}
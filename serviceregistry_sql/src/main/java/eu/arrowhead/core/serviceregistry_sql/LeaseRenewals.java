@@ -0,0 +1,173 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.AuthException;
+import eu.arrowhead.common.exception.UnavailableServerException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+
+/**
+ * Extends the end of validity of Service Registry entries (lease renewal / heartbeat of the providers).
+ * <p>
+ * Renewals are not written one by one: the requests wait in a queue, and one writer thread takes everything queued so far (up to
+ * <tt>lease_batch_size</tt> renewals), and extends all of them with one <i>UPDATE ... WHERE id IN (...)</i> statement per lease duration. While
+ * a batch is written the next one is collected, so the number of statements follows the write capacity of the database, not the heartbeat rate.
+ * <p>
+ * The existence and the provider of the renewed entries are checked with one query per batch as well (instead of one per heartbeat in the access
+ * control filter), and the new end of validity is put into the {@link ServiceRegistryIndex} before the providers get their answer.
+ */
+final class LeaseRenewals {
+
+  private static final Logger log = Logger.getLogger(LeaseRenewals.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  private static final BlockingQueue<Renewal> queue = new LinkedBlockingQueue<>();
+  private static Thread writerThread;
+
+  private LeaseRenewals() throws AssertionError {
+    throw new AssertionError("LeaseRenewals is a non-instantiable class");
+  }
+
+  /**
+   * Extends the end of validity of an entry to <tt>leaseDuration</tt> seconds from now, and waits until the change is written to the database.
+   *
+   * @param clientSystemName The system name from the certificate of the client (null in insecure mode), only the provider of the entry can
+   *     renew its lease
+   *
+   * @return the new end of validity, or null if there is no Service Registry entry with the given id
+   *
+   * @throws AuthException if the entry is provided by another system than the client
+   */
+  static LocalDateTime renew(long id, int leaseDuration, String clientSystemName) {
+    startWriter();
+    Renewal renewal = new Renewal(id, leaseDuration, clientSystemName);
+    queue.add(renewal);
+    try {
+      return renewal.result.get(ServiceRegistryMain.LEASE_RENEWAL_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ArrowheadException("Lease renewal was interrupted.", Status.SERVICE_UNAVAILABLE.getStatusCode(), e);
+    } catch (TimeoutException e) {
+      throw new UnavailableServerException("Lease renewal was not written within " + ServiceRegistryMain.LEASE_RENEWAL_TIMEOUT + " ms.",
+                                           Status.SERVICE_UNAVAILABLE.getStatusCode(), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ArrowheadException("Lease renewal failed: " + e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private static synchronized void startWriter() {
+    if (writerThread == null) {
+      writerThread = new Thread(LeaseRenewals::runWriter, "sr-lease-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+  }
+
+  private static void runWriter() {
+    List<Renewal> batch = new ArrayList<>();
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        batch.add(queue.take());
+        queue.drainTo(batch, ServiceRegistryMain.LEASE_BATCH_SIZE - 1);
+        writeBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        log.error("Lease renewal batch failed: " + e.getMessage(), e);
+        batch.forEach(renewal -> renewal.result.completeExceptionally(e));
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private static void writeBatch(List<Renewal> batch) {
+    // (id, provider name, service definition) of the existing entries, the unknown ids and the renewals of other providers are answered here
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("ids", batch.stream().map(renewal -> renewal.id).collect(Collectors.toSet()));
+    Map<Long, Object[]> entries = new HashMap<>();
+    for (Object[] row : dm.getAllByQuery("SELECT e.id, e.provider.systemName, e.providedService.serviceDefinition FROM ServiceRegistryEntry e "
+                                             + "WHERE e.id IN (:ids)", Object[].class, parameters)) {
+      entries.put((Long) row[0], row);
+    }
+
+    Map<Integer, List<Renewal>> byDuration = new HashMap<>();
+    for (Renewal renewal : batch) {
+      Object[] entry = entries.get(renewal.id);
+      if (entry == null) {
+        renewal.result.complete(null);
+      } else if (renewal.clientSystemName != null && !isProvidedBy((String) entry[1], renewal.clientSystemName)) {
+        log.error("Provider system name and cert common name do not match! SR lease renewal denied!");
+        renewal.result.completeExceptionally(new AuthException("Provider system " + entry[1] + " and cert common name (" + renewal.clientSystemName
+                                                                   + ") do not match!", Status.UNAUTHORIZED.getStatusCode()));
+      } else {
+        byDuration.computeIfAbsent(renewal.leaseDuration, k -> new ArrayList<>()).add(renewal);
+      }
+    }
+
+    for (Map.Entry<Integer, List<Renewal>> group : byDuration.entrySet()) {
+      LocalDateTime endOfValidity = LocalDateTime.now().plusSeconds(group.getKey());
+      Set<Long> ids = group.getValue().stream().map(renewal -> renewal.id).collect(Collectors.toSet());
+
+      parameters.clear();
+      parameters.put("endOfValidity", endOfValidity);
+      parameters.put("ids", ids);
+      dm.executeUpdate("UPDATE ServiceRegistryEntry e SET e.endOfValidity = :endOfValidity WHERE e.id IN (:ids)", parameters);
+      ServiceExpiryScheduler.schedule(endOfValidity);
+
+      Map<String, Map<Long, LocalDateTime>> renewedServices = new HashMap<>();
+      for (Long id : ids) {
+        renewedServices.computeIfAbsent((String) entries.get(id)[2], k -> new HashMap<>()).put(id, endOfValidity);
+      }
+      renewedServices.forEach(ServiceRegistryIndex::renew);
+      for (Renewal renewal : group.getValue()) {
+        renewal.result.complete(endOfValidity);
+      }
+    }
+    log.debug("Renewed " + batch.size() + " leases in " + byDuration.size() + " statements");
+  }
+
+  // Same rule as the access control filter applies on registration
+  private static boolean isProvidedBy(String providerName, String clientSystemName) {
+    return providerName.equalsIgnoreCase(clientSystemName) || providerName.replaceAll("_", "").equalsIgnoreCase(clientSystemName);
+  }
+
+  private static class Renewal {
+
+    private final long id;
+    private final int leaseDuration;
+    private final String clientSystemName;
+    private final CompletableFuture<LocalDateTime> result = new CompletableFuture<>();
+
+    Renewal(long id, int leaseDuration, String clientSystemName) {
+      this.id = id;
+      this.leaseDuration = leaseDuration;
+      this.clientSystemName = clientSystemName;
+    }
+  }
+
+}
@@ -0,0 +1,296 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.log4j.Logger;
+
+/**
+ * Checks whether service providers accept TCP connections. The connection attempts are made with non-blocking channels on one selector, so a batch
+ * of providers is probed in parallel (at most <tt>ping_max_concurrent</tt> connects at once), and a batch takes at most about one
+ * <tt>ping_timeout</tt> per <tt>ping_max_concurrent</tt> providers instead of one timeout per dead provider.
+ * <p>
+ * Host names are resolved before the connection attempts, in parallel on a small thread pool (the JDK caches the lookups), so a slow DNS lookup
+ * does not stall the selector loop. A provider whose address can not be resolved within <tt>ping_timeout</tt> is reported as not reachable.
+ * <p>
+ * The results are kept in a liveness table, which is filled by the scheduled provider ping ({@link PingProvidersTask}) and by a background
+ * refresher. Queries with the <i>pingProviders</i> flag never wait for a probe: they use the last known state of the providers, and queue the
+ * providers without a result younger than <tt>liveness_ttl</tt> seconds to the refresher. A provider which was never probed is treated as alive
+ * until its first probe finishes.
+ */
+final class LivenessProber {
+
+  private static final Logger log = Logger.getLogger(LivenessProber.class.getName());
+
+  // (address, port) -> last probe result
+  private static final Map<List<Object>, Liveness> livenessTable = new ConcurrentHashMap<>();
+  // The providers waiting for the refresher, and whether a refresh is already submitted
+  private static final Set<List<Object>> pendingTargets = ConcurrentHashMap.newKeySet();
+  private static final AtomicBoolean refreshScheduled = new AtomicBoolean();
+  private static final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "liveness-refresher");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // Name lookups are blocking, they are made on these threads instead of the selector loop
+  private static final int RESOLVER_THREADS = 16;
+  private static final ExecutorService resolver = Executors.newFixedThreadPool(RESOLVER_THREADS, runnable -> {
+    Thread thread = new Thread(runnable, "liveness-resolver");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private LivenessProber() throws AssertionError {
+    throw new AssertionError("LivenessProber is a non-instantiable class");
+  }
+
+  /**
+   * Removes the entries whose provider did not accept a connection at its last probe. Does not probe the providers itself, the ones without a
+   * recent result are queued to the background refresher, and are kept (if never probed) or judged by their last known state until it finishes.
+   */
+  static void filterOnPing(List<ServiceRegistryEntry> fetchedList) {
+    long now = System.currentTimeMillis();
+    fetchedList.removeIf(entry -> {
+      List<Object> target = getTarget(entry.getProvider());
+      Liveness liveness = livenessTable.get(target);
+      if (liveness == null || liveness.isExpired(now)) {
+        pendingTargets.add(target);
+      }
+      return liveness != null && !liveness.alive;
+    });
+
+    if (!pendingTargets.isEmpty() && refreshScheduled.compareAndSet(false, true)) {
+      refresher.execute(LivenessProber::refresh);
+    }
+  }
+
+  // Probes the queued providers in one batch, and drops the results which have not been refreshed for a long time
+  private static void refresh() {
+    refreshScheduled.set(false);
+    Set<List<Object>> targets = new LinkedHashSet<>(pendingTargets);
+    pendingTargets.removeAll(targets);
+    if (targets.isEmpty()) {
+      return;
+    }
+    try {
+      probe(targets);
+    } catch (RuntimeException e) {
+      log.error("Background liveness refresh failed: " + e.getMessage(), e);
+    }
+
+    // Providers which are not queried anymore (e.g. removed from the registry)
+    long now = System.currentTimeMillis();
+    livenessTable.values().removeIf(liveness -> now - liveness.checkedAt >= 10 * TimeUnit.SECONDS.toMillis(ServiceRegistryMain.LIVENESS_TTL));
+  }
+
+  /**
+   * Probes the given providers in parallel, and stores the results in the liveness table.
+   *
+   * @return whether each provider accepted a connection within the ping timeout
+   */
+  static Map<ArrowheadSystem, Boolean> probeSystems(Collection<ArrowheadSystem> providers) {
+    Set<List<Object>> targets = new LinkedHashSet<>();
+    for (ArrowheadSystem provider : providers) {
+      targets.add(getTarget(provider));
+    }
+    Map<List<Object>, Boolean> results = probe(targets);
+
+    Map<ArrowheadSystem, Boolean> systemResults = new HashMap<>();
+    for (ArrowheadSystem provider : providers) {
+      systemResults.put(provider, results.get(getTarget(provider)));
+    }
+    return systemResults;
+  }
+
+  private static Map<List<Object>, Boolean> probe(Collection<List<Object>> targets) {
+    Map<List<Object>, Boolean> results = new HashMap<>();
+    long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(ServiceRegistryMain.PING_TIMEOUT);
+    Map<List<Object>, InetSocketAddress> addresses = resolve(targets, System.nanoTime() + timeoutNanos, results);
+    Deque<List<Object>> pending = new ArrayDeque<>(addresses.keySet());
+    int inFlight = 0;
+
+    try (Selector selector = Selector.open()) {
+      while (!pending.isEmpty() || inFlight > 0) {
+        while (!pending.isEmpty() && inFlight < ServiceRegistryMain.PING_MAX_CONCURRENT) {
+          List<Object> target = pending.poll();
+          if (startConnect(selector, target, addresses.get(target), System.nanoTime() + timeoutNanos, results)) {
+            inFlight++;
+          }
+        }
+        if (inFlight == 0) {
+          continue;
+        }
+
+        long nextDeadline = Long.MAX_VALUE;
+        for (SelectionKey key : selector.keys()) {
+          if (key.isValid()) {
+            nextDeadline = Math.min(nextDeadline, ((Probe) key.attachment()).deadline);
+          }
+        }
+        selector.select(Math.max(1L, TimeUnit.NANOSECONDS.toMillis(nextDeadline - System.nanoTime()) + 1));
+
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+          SelectionKey key = selectedKeys.next();
+          selectedKeys.remove();
+          boolean connected;
+          try {
+            connected = ((SocketChannel) key.channel()).finishConnect();
+          } catch (IOException e) {
+            connected = false;
+          }
+          finish(key, connected, results);
+          inFlight--;
+        }
+
+        long now = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+          if (key.isValid() && ((Probe) key.attachment()).deadline - now <= 0) {
+            finish(key, false, results);
+            inFlight--;
+          }
+        }
+      }
+    } catch (IOException e) {
+      log.error("Provider liveness probe failed: " + e.getMessage(), e);
+      // The providers which could not be probed are not reported as dead
+      for (List<Object> target : targets) {
+        results.putIfAbsent(target, true);
+      }
+    }
+
+    long checkedAt = System.currentTimeMillis();
+    results.forEach((target, alive) -> livenessTable.put(target, new Liveness(alive, checkedAt)));
+    log.debug("Probed " + results.size() + " providers, " + results.values().stream().filter(alive -> !alive).count() + " are not reachable");
+    return results;
+  }
+
+  // Resolves the addresses of the targets in parallel, the ones which can not be resolved until the deadline are put into the results as dead
+  private static Map<List<Object>, InetSocketAddress> resolve(Collection<List<Object>> targets, long deadline, Map<List<Object>, Boolean> results) {
+    Map<List<Object>, Future<InetSocketAddress>> lookups = new LinkedHashMap<>();
+    for (List<Object> target : targets) {
+      lookups.put(target, resolver.submit(() -> new InetSocketAddress((String) target.get(0), (Integer) target.get(1))));
+    }
+
+    Map<List<Object>, InetSocketAddress> addresses = new LinkedHashMap<>();
+    for (Map.Entry<List<Object>, Future<InetSocketAddress>> lookup : lookups.entrySet()) {
+      try {
+        InetSocketAddress address = lookup.getValue().get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (address.isUnresolved()) {
+          results.put(lookup.getKey(), false);
+        } else {
+          addresses.put(lookup.getKey(), address);
+        }
+      } catch (ExecutionException | TimeoutException e) {
+        // Unknown host name, invalid port or a lookup slower than the ping timeout
+        lookup.getValue().cancel(true);
+        results.put(lookup.getKey(), false);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        lookup.getValue().cancel(true);
+        // Not probed, so not reported as dead
+        results.put(lookup.getKey(), true);
+      }
+    }
+    return addresses;
+  }
+
+  // Returns true if the connection is still in progress
+  private static boolean startConnect(Selector selector, List<Object> target, InetSocketAddress address, long deadline,
+                                      Map<List<Object>, Boolean> results) {
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      if (channel.connect(address)) {
+        results.put(target, true);
+        channel.close();
+        return false;
+      }
+      channel.register(selector, SelectionKey.OP_CONNECT, new Probe(target, deadline));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      // No route to the host
+      results.put(target, false);
+      closeQuietly(channel);
+      return false;
+    }
+  }
+
+  private static void finish(SelectionKey key, boolean alive, Map<List<Object>, Boolean> results) {
+    results.put(((Probe) key.attachment()).target, alive);
+    key.cancel();
+    closeQuietly((SocketChannel) key.channel());
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private static List<Object> getTarget(ArrowheadSystem provider) {
+    return Arrays.asList(provider.getAddress(), provider.getPort());
+  }
+
+  private static class Probe {
+
+    private final List<Object> target;
+    private final long deadline;
+
+    Probe(List<Object> target, long deadline) {
+      this.target = target;
+      this.deadline = deadline;
+    }
+  }
+
+  private static class Liveness {
+
+    private final boolean alive;
+    private final long checkedAt;
+
+    Liveness(boolean alive, long checkedAt) {
+      this.alive = alive;
+      this.checkedAt = checkedAt;
+    }
+
+    boolean isExpired(long now) {
+      return now - checkedAt >= TimeUnit.SECONDS.toMillis(ServiceRegistryMain.LIVENESS_TTL);
+    }
+  }
+
+}
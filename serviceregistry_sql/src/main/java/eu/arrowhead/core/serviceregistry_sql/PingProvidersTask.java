@@ -8,9 +8,13 @@
 package eu.arrowhead.core.serviceregistry_sql;
 
 
+import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.ServiceRegistryEntry;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimerTask;
 import org.apache.log4j.Logger;
 
@@ -28,12 +32,18 @@ class PingProvidersTask extends TimerTask {
   private int pingAndRemoveServices() {
     List<ServiceRegistryEntry> srEntries = ServiceRegistryResource.dm.getAll(ServiceRegistryEntry.class, null);
 
-    boolean connectionIsAlive;
+    //Every provider is probed once, in parallel
+    Set<ArrowheadSystem> providers = new HashSet<>();
+    for (ServiceRegistryEntry entry : srEntries) {
+      providers.add(entry.getProvider());
+    }
+    Map<ArrowheadSystem, Boolean> liveness = LivenessProber.probeSystems(providers);
+
     int deleteCount = 0;
     for (ServiceRegistryEntry entry : srEntries) {
-      connectionIsAlive = RegistryUtils.pingHost(entry.getProvider().getAddress(), entry.getProvider().getPort(), ServiceRegistryMain.PING_TIMEOUT);
-      if (!connectionIsAlive) {
+      if (!liveness.get(entry.getProvider())) {
         ServiceRegistryResource.dm.delete(entry);
+        ServiceRegistryIndex.refresh(entry.getProvidedService().getServiceDefinition());
         deleteCount++;
       }
     }
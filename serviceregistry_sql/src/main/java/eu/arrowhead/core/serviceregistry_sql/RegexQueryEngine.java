@@ -0,0 +1,230 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.messages.ServiceQueryByRegex;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the regular expression queries of the management API (see {@link ServiceRegistryApi#queryByRegex}) without loading the whole registry.
+ * <p>
+ * The filters are turned into one database query: interface filters (case insensitive exact matches) become subqueries, and the literal prefix of
+ * an anchored regular expression (e.g. <i>temperature</i> in <i>^temperature-.*</i>) becomes a <i>LIKE 'prefix%'</i> restriction. The
+ * candidates are read in pages of <tt>query_page_size</tt> rows ordered by id, and checked against the (cached) compiled patterns, until the
+ * requested number of matches is found. The next page of matches can be requested with the id of the last returned entry, which the API sends
+ * in the <i>X-Next-After-Id</i> header whenever the page is full.
+ */
+final class RegexQueryEngine {
+
+  private static final Logger log = Logger.getLogger(RegexQueryEngine.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  // Characters with a special meaning outside of character classes, the literal prefix ends at the first one
+  private static final String META_CHARACTERS = ".[]()*+?{}^$|";
+  // Quantifiers which make the preceding character optional
+  private static final String OPTIONAL_QUANTIFIERS = "*?{";
+  private static final char LIKE_ESCAPE = '!';
+
+  // Least recently used compiled patterns, keyed by the regular expression (they are all compiled with the same flags)
+  private static final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+      return size() > ServiceRegistryMain.REGEX_CACHE_SIZE;
+    }
+  };
+
+  private RegexQueryEngine() throws AssertionError {
+    throw new AssertionError("RegexQueryEngine is a non-instantiable class");
+  }
+
+  /**
+   * Returns the entries matching every filter, ordered by id.
+   *
+   * @param afterId only entries with a greater id are returned (the id of the last entry of the previous page, or 0)
+   * @param limit the maximum number of returned entries, at most <tt>query_page_size</tt> (0 means <tt>query_page_size</tt>)
+   */
+  static List<ServiceRegistryEntry> query(List<ServiceQueryByRegex> filters, long afterId, int limit) {
+    if (filters == null) {
+      filters = new ArrayList<>();
+    }
+    limit = getPageLimit(limit);
+
+    Map<String, Object> parameters = new HashMap<>();
+    List<Pattern> filterPatterns = new ArrayList<>();
+    String hql = buildQuery(filters, parameters, filterPatterns);
+
+    List<ServiceRegistryEntry> matches = new ArrayList<>();
+    long lastId = afterId;
+    int pageCount = 0;
+    while (matches.size() < limit) {
+      parameters.put("lastId", lastId);
+      List<ServiceRegistryEntry> candidates = dm.getAllByQuery(hql, ServiceRegistryEntry.class, parameters, ServiceRegistryMain.QUERY_PAGE_SIZE);
+      pageCount++;
+      for (ServiceRegistryEntry candidate : candidates) {
+        lastId = candidate.getId();
+        if (matchesAll(candidate, filters, filterPatterns)) {
+          matches.add(candidate);
+          if (matches.size() == limit) {
+            break;
+          }
+        }
+      }
+      if (candidates.size() < ServiceRegistryMain.QUERY_PAGE_SIZE) {
+        break;
+      }
+    }
+
+    log.debug("Regex query read " + pageCount + " pages of candidates after id " + afterId + ", found " + matches.size() + " entries");
+    return matches;
+  }
+
+  /**
+   * Returns the maximum number of entries a query with the given limit returns: the limit capped at <tt>query_page_size</tt> (0 means
+   * <tt>query_page_size</tt>).
+   */
+  static int getPageLimit(int limit) {
+    return limit <= 0 || limit > ServiceRegistryMain.QUERY_PAGE_SIZE ? ServiceRegistryMain.QUERY_PAGE_SIZE : limit;
+  }
+
+  // Fills in the parameters and the compiled pattern of every filter (null for interface filters, which are fully checked by the query)
+  private static String buildQuery(List<ServiceQueryByRegex> filters, Map<String, Object> parameters, List<Pattern> filterPatterns) {
+    StringBuilder hql = new StringBuilder("SELECT e FROM ServiceRegistryEntry e JOIN FETCH e.providedService s JOIN FETCH e.provider p "
+                                              + "WHERE e.id > :lastId");
+    for (int i = 0; i < filters.size(); i++) {
+      ServiceQueryByRegex filter = filters.get(i);
+      String column;
+      switch (filter.getFieldName()) {
+        case systemName:
+          column = "p.systemName";
+          break;
+        case serviceDefinition:
+          column = "s.serviceDefinition";
+          break;
+        case interfaces:
+          hql.append(" AND EXISTS (SELECT i FROM ArrowheadService s2 JOIN s2.interfaces i WHERE s2.id = s.id AND LOWER(i) = :interface").append(i)
+             .append(")");
+          parameters.put("interface" + i, filter.getRegularExpression().toLowerCase(Locale.ROOT));
+          filterPatterns.add(null);
+          continue;
+        default:
+          throw new BadPayloadException(
+              "SR entries can only be queried based on systemName, serviceDefinition and interfaces fields with this method.");
+      }
+
+      filterPatterns.add(getPattern(filter.getRegularExpression()));
+      String prefix = getLiteralPrefix(filter.getRegularExpression(), filter.getPartialMatch());
+      if (!prefix.isEmpty()) {
+        hql.append(" AND LOWER(").append(column).append(") LIKE :prefix").append(i).append(" ESCAPE '").append(LIKE_ESCAPE).append("'");
+        parameters.put("prefix" + i, escapeLike(prefix.toLowerCase(Locale.ROOT)) + "%");
+      }
+    }
+    hql.append(" ORDER BY e.id");
+    return hql.toString();
+  }
+
+  private static boolean matchesAll(ServiceRegistryEntry entry, List<ServiceQueryByRegex> filters, List<Pattern> filterPatterns) {
+    for (int i = 0; i < filters.size(); i++) {
+      Pattern pattern = filterPatterns.get(i);
+      if (pattern == null) {
+        continue;
+      }
+      ServiceQueryByRegex filter = filters.get(i);
+      String value = filter.getFieldName() == ServiceQueryByRegex.FieldType.systemName ? entry.getProvider().getSystemName()
+                                                                                        : entry.getProvidedService().getServiceDefinition();
+      Matcher matcher = pattern.matcher(value);
+      if (filter.getPartialMatch() ? !matcher.find() : !matcher.matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Pattern getPattern(String regex) {
+    synchronized (patterns) {
+      Pattern pattern = patterns.get(regex);
+      if (pattern == null) {
+        try {
+          pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException e) {
+          throw new BadPayloadException("Invalid regular expression: " + e.getMessage());
+        }
+        patterns.put(regex, pattern);
+      }
+      return pattern;
+    }
+  }
+
+  /**
+   * Returns the literal characters every matching string starts with, or an empty string if the start of the match is not fixed. Only the start of
+   * full matches and of expressions beginning with <i>^</i> is fixed. The prefix only narrows down the candidates, so it is cut short at anything
+   * not trivially literal (alternatives, character classes, optional characters, non-ASCII characters).
+   */
+  private static String getLiteralPrefix(String regex, boolean partialMatch) {
+    int pos = 0;
+    if (regex.startsWith("^")) {
+      pos = 1;
+    } else if (partialMatch) {
+      return "";
+    }
+    // An alternative anywhere can replace the prefix
+    if (regex.indexOf('|') >= 0) {
+      return "";
+    }
+
+    StringBuilder prefix = new StringBuilder();
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      char literal;
+      int next;
+      if (c == '\\') {
+        // Escaped letters and digits are character classes, back references or quoting (\d, \1, \Q...)
+        if (pos + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(pos + 1))) {
+          break;
+        }
+        literal = regex.charAt(pos + 1);
+        next = pos + 2;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        break;
+      } else {
+        literal = c;
+        next = pos + 1;
+      }
+
+      if (literal > 127 || (next < regex.length() && OPTIONAL_QUANTIFIERS.indexOf(regex.charAt(next)) >= 0)) {
+        break;
+      }
+      prefix.append(literal);
+      pos = next;
+    }
+    return prefix.toString();
+  }
+
+  private static String escapeLike(String value) {
+    StringBuilder escaped = new StringBuilder();
+    for (char c : value.toCharArray()) {
+      if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+        escaped.append(LIKE_ESCAPE);
+      }
+      escaped.append(c);
+    }
+    return escaped.toString();
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ArrowheadService;
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.messages.ServiceRegistryBulkResult;
+import eu.arrowhead.common.messages.ServiceRegistryEntryResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+
+/**
+ * Registers and removes lists of Service Registry entries. The services, systems and existing entries referenced by the whole list are looked up
+ * with a few set-based queries (instead of 3 lookups per entry), and the changes are written in one transaction, in JDBC batches.
+ * <p>
+ * Every entry gets its own result, with the status code the single register/remove request would have returned. Duplicate entries (already
+ * registered, or present twice in the list) are rejected one by one, but a database error fails the whole list.
+ * <p>
+ * The database compares the service definitions and the system fields case insensitively (utf8_general_ci), so the lookup maps are keyed on lower
+ * case values, otherwise a list only differing in case from the stored rows would be saved as new rows (and fail on the unique constraints).
+ */
+final class RegistryBulkOperations {
+
+  private static final Logger log = Logger.getLogger(RegistryBulkOperations.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  private RegistryBulkOperations() throws AssertionError {
+    throw new AssertionError("RegistryBulkOperations is a non-instantiable class");
+  }
+
+  static ServiceRegistryBulkResult register(List<ServiceRegistryEntry> entries) {
+    checkPayload(entries);
+    Map<String, ArrowheadService> services = getServices(entries);
+    Map<List<Object>, ArrowheadSystem> systems = getSystems(entries);
+    Map<List<Long>, ServiceRegistryEntry> existingEntries = getEntries(services.values(), systems.values());
+
+    ServiceRegistryEntryResult[] results = new ServiceRegistryEntryResult[entries.size()];
+    Map<String, ArrowheadService> changedServices = new LinkedHashMap<>();
+    Map<List<Object>, ArrowheadSystem> changedSystems = new LinkedHashMap<>();
+    Set<List<Object>> requestedPairs = new HashSet<>();
+    List<ServiceRegistryEntry> newEntries = new ArrayList<>();
+    List<Integer> newEntryIndexes = new ArrayList<>();
+
+    for (int i = 0; i < entries.size(); i++) {
+      ServiceRegistryEntry entry = entries.get(i);
+      entry.toDatabase();
+
+      // The same changes as in ServiceRegistryResource.registerGeneric: new services/systems are saved, existing ones are updated
+      String serviceDefinition = entry.getProvidedService().getServiceDefinition();
+      String serviceKey = normalize(serviceDefinition);
+      ArrowheadService service = services.get(serviceKey);
+      if (service == null) {
+        service = entry.getProvidedService();
+        services.put(serviceKey, service);
+      } else {
+        service.setInterfaces(entry.getProvidedService().getInterfaces());
+      }
+      changedServices.put(serviceKey, service);
+
+      List<Object> providerKey = getSystemKey(entry.getProvider());
+      ArrowheadSystem provider = systems.get(providerKey);
+      if (provider == null) {
+        provider = entry.getProvider();
+        systems.put(providerKey, provider);
+      } else {
+        provider.setAuthenticationInfo(entry.getProvider().getAuthenticationInfo());
+      }
+      changedSystems.put(providerKey, provider);
+
+      boolean registered = service.getId() != null && provider.getId() != null && existingEntries
+          .containsKey(Arrays.asList(service.getId(), provider.getId()));
+      if (registered || !requestedPairs.add(Arrays.asList(serviceKey, providerKey))) {
+        results[i] = new ServiceRegistryEntryResult(i, Status.BAD_REQUEST.getStatusCode(), entry,
+                                                    "There is already a Service Registry entry with this provider(" + provider.getSystemName()
+                                                        + ") and providedService(" + serviceDefinition + ")");
+        continue;
+      }
+      entry.setProvidedService(service);
+      entry.setProvider(provider);
+      newEntries.add(entry);
+      newEntryIndexes.add(i);
+    }
+
+    // Services and systems first, so the new entries can reference them
+    List<Object> toSave = new ArrayList<>(changedServices.values());
+    toSave.addAll(changedSystems.values());
+    toSave.addAll(newEntries);
+    dm.saveOrUpdateAll(toSave);
+
+    for (int i = 0; i < newEntries.size(); i++) {
+      ServiceRegistryEntry entry = newEntries.get(i);
+      ServiceExpiryScheduler.schedule(entry);
+      RegistryUtils.restoreMetadata(entry);
+      results[newEntryIndexes.get(i)] = new ServiceRegistryEntryResult(newEntryIndexes.get(i), Status.CREATED.getStatusCode(), entry, null);
+    }
+    changedServices.values().forEach(service -> ServiceRegistryIndex.refresh(service.getServiceDefinition()));
+
+    log.info("Bulk registration saved " + newEntries.size() + " of " + entries.size() + " Service Registry entries.");
+    return new ServiceRegistryBulkResult(Arrays.asList(results));
+  }
+
+  static ServiceRegistryBulkResult remove(List<ServiceRegistryEntry> entries) {
+    checkPayload(entries);
+    Map<String, ArrowheadService> services = getServices(entries);
+    Map<List<Object>, ArrowheadSystem> systems = getSystems(entries);
+    Map<List<Long>, ServiceRegistryEntry> existingEntries = getEntries(services.values(), systems.values());
+
+    ServiceRegistryEntryResult[] results = new ServiceRegistryEntryResult[entries.size()];
+    Map<Long, ServiceRegistryEntry> toDelete = new LinkedHashMap<>();
+    Set<String> changedServices = new HashSet<>();
+    for (int i = 0; i < entries.size(); i++) {
+      ServiceRegistryEntry entry = entries.get(i);
+      ArrowheadService service = services.get(normalize(entry.getProvidedService().getServiceDefinition()));
+      ArrowheadSystem provider = systems.get(getSystemKey(entry.getProvider()));
+      ServiceRegistryEntry retrievedEntry = null;
+      if (service != null && provider != null) {
+        retrievedEntry = existingEntries.get(Arrays.asList(service.getId(), provider.getId()));
+      }
+
+      if (retrievedEntry == null || toDelete.containsKey(retrievedEntry.getId())) {
+        results[i] = new ServiceRegistryEntryResult(i, Status.NO_CONTENT.getStatusCode(), entry,
+                                                    entry.toString() + " was not found in the SR to delete.");
+      } else {
+        toDelete.put(retrievedEntry.getId(), retrievedEntry);
+        changedServices.add(service.getServiceDefinition());
+        results[i] = new ServiceRegistryEntryResult(i, Status.OK.getStatusCode(), retrievedEntry, null);
+      }
+    }
+
+    if (!toDelete.isEmpty()) {
+      dm.delete(toDelete.values().toArray(new ServiceRegistryEntry[0]));
+    }
+    for (ServiceRegistryEntry entry : toDelete.values()) {
+      RegistryUtils.restoreMetadata(entry);
+    }
+    changedServices.forEach(ServiceRegistryIndex::refresh);
+
+    log.info("Bulk removal deleted " + toDelete.size() + " of " + entries.size() + " Service Registry entries.");
+    return new ServiceRegistryBulkResult(Arrays.asList(results));
+  }
+
+  private static void checkPayload(List<ServiceRegistryEntry> entries) {
+    if (entries == null || entries.isEmpty()) {
+      throw new BadPayloadException("The list of Service Registry entries is empty.");
+    }
+    if (entries.size() > ServiceRegistryMain.BULK_MAX_ENTRIES) {
+      throw new BadPayloadException("At most " + ServiceRegistryMain.BULK_MAX_ENTRIES + " Service Registry entries can be sent in one request.");
+    }
+  }
+
+  // Normalized service definition -> the stored service, for the services referenced by the entries
+  private static Map<String, ArrowheadService> getServices(List<ServiceRegistryEntry> entries) {
+    Set<String> serviceDefinitions = entries.stream().map(entry -> entry.getProvidedService().getServiceDefinition()).collect(Collectors.toSet());
+    Map<String, ArrowheadService> services = new HashMap<>();
+    for (ArrowheadService service : dm.getAllIn(ArrowheadService.class, Collections.singletonMap("serviceDefinition", serviceDefinitions))) {
+      services.put(normalize(service.getServiceDefinition()), service);
+    }
+    return services;
+  }
+
+  // Normalized (systemName, address, port) -> the stored system, for the systems referenced by the entries
+  private static Map<List<Object>, ArrowheadSystem> getSystems(List<ServiceRegistryEntry> entries) {
+    Set<String> systemNames = entries.stream().map(entry -> entry.getProvider().getSystemName()).collect(Collectors.toSet());
+    Map<List<Object>, ArrowheadSystem> systems = new HashMap<>();
+    for (ArrowheadSystem system : dm.getAllIn(ArrowheadSystem.class, Collections.singletonMap("systemName", systemNames))) {
+      systems.put(getSystemKey(system), system);
+    }
+    return systems;
+  }
+
+  // The unique key of the arrowhead_system table
+  private static List<Object> getSystemKey(ArrowheadSystem system) {
+    return Arrays.asList(normalize(system.getSystemName()), normalize(system.getAddress()), system.getPort());
+  }
+
+  private static String normalize(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  // (service id, provider id) -> the stored entry, for every combination of the given services and systems
+  private static Map<List<Long>, ServiceRegistryEntry> getEntries(Collection<ArrowheadService> services, Collection<ArrowheadSystem> systems) {
+    Map<List<Long>, ServiceRegistryEntry> entries = new HashMap<>();
+    if (services.isEmpty() || systems.isEmpty()) {
+      return entries;
+    }
+
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("serviceIds", services.stream().map(ArrowheadService::getId).collect(Collectors.toSet()));
+    parameters.put("providerIds", systems.stream().map(ArrowheadSystem::getId).collect(Collectors.toSet()));
+    for (ServiceRegistryEntry entry : dm.getAllByQuery(
+        "SELECT e FROM ServiceRegistryEntry e WHERE e.providedService.id IN (:serviceIds) AND e.provider.id IN (:providerIds)",
+        ServiceRegistryEntry.class, parameters)) {
+      entries.put(Arrays.asList(entry.getProvidedService().getId(), entry.getProvider().getId()), entry);
+    }
+    return entries;
+  }
+
+}
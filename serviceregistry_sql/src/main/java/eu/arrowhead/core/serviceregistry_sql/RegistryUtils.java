@@ -7,52 +7,107 @@
 
 package eu.arrowhead.core.serviceregistry_sql;
 
+import eu.arrowhead.common.DatabaseManager;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ServiceRegistryEntry;
-import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.apache.log4j.Logger;
 
 class RegistryUtils {
 
-  static boolean pingHost(String host, int port, int timeout) {
-    try (Socket socket = new Socket()) {
-      socket.connect(new InetSocketAddress(host, port), timeout);
-      return true;
-    } catch (IOException e) {
-      return false; // Either timeout or unreachable or failed DNS lookup.
+  private static final Logger log = Logger.getLogger(RegistryUtils.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+  // Number of migrated entries written in one transaction
+  private static final int MIGRATION_BATCH_SIZE = 500;
+
+  /**
+   * Returns the entries of a service which have at least one of the given interfaces, a version between <tt>minVersion</tt> and
+   * <tt>maxVersion</tt> (both inclusive), and (if <tt>metadata</tt> is not null) exactly the given metadata, using a single database query.
+   */
+  static List<ServiceRegistryEntry> queryDatabase(String serviceDefinition, Set<String> interfaces, int minVersion, int maxVersion,
+                                                  Map<String, String> metadata) {
+    if (interfaces == null || interfaces.isEmpty() || minVersion > maxVersion) {
+      return new ArrayList<>();
     }
-  }
 
-  static void filterOnVersion(List<ServiceRegistryEntry> fetchedList, int targetVersion) {
-    fetchedList.removeIf(current -> current.getVersion() != targetVersion);
-  }
+    Map<String, Object> parameters = new HashMap<>();
+    StringBuilder hql = new StringBuilder("SELECT e FROM ServiceRegistryEntry e JOIN FETCH e.providedService s JOIN FETCH e.provider "
+                                              + "WHERE s.serviceDefinition = :serviceDefinition "
+                                              + "AND EXISTS (SELECT i FROM ArrowheadService s2 JOIN s2.interfaces i WHERE s2.id = s.id AND i IN (:interfaces)) "
+                                              + "AND COALESCE(e.version, 1) BETWEEN :minVersion AND :maxVersion");
+    parameters.put("serviceDefinition", serviceDefinition);
+    parameters.put("interfaces", interfaces);
+    parameters.put("minVersion", minVersion);
+    parameters.put("maxVersion", maxVersion);
 
-  static void filterOnVersion(List<ServiceRegistryEntry> fetchedList, int minVersion, int maxVersion) {
-    fetchedList.removeIf(current -> current.getVersion() < minVersion || current.getVersion() > maxVersion);
-  }
+    if (metadata != null) {
+      // Metadata search is an exact match: every given pair has to be present, and the entry can not have other pairs
+      int i = 0;
+      for (Entry<String, String> pair : metadata.entrySet()) {
+        hql.append(" AND EXISTS (SELECT m FROM ServiceRegistryEntry e2 JOIN e2.metadata m WHERE e2.id = e.id AND KEY(m) = :key").append(i)
+           .append(" AND VALUE(m) = :value").append(i).append(")");
+        parameters.put("key" + i, pair.getKey());
+        parameters.put("value" + i, pair.getValue());
+        i++;
+      }
+      hql.append(" AND SIZE(e.metadata) = :metadataSize");
+      parameters.put("metadataSize", metadata.size());
+    }
+    hql.append(" ORDER BY e.id");
 
-  static void filterOnMeta(List<ServiceRegistryEntry> fetchedList, Map<String, String> metadata) {
-    fetchedList.removeIf(current -> !metadata.equals(current.getProvidedService().getServiceMetadata()));
+    List<ServiceRegistryEntry> entries = dm.getAllByQuery(hql.toString(), ServiceRegistryEntry.class, parameters);
+    for (ServiceRegistryEntry entry : entries) {
+      restoreMetadata(entry);
+    }
+    return entries;
   }
 
-  static void filterOnPing(List<ServiceRegistryEntry> fetchedList) {
-    fetchedList.removeIf(current -> !pingHost(current.getProvider().getAddress(), current.getProvider().getPort(),
-                                              ServiceRegistryMain.PING_TIMEOUT));
+  /**
+   * Puts the metadata of an entry back into its provided service (see {@link ServiceRegistryEntry#fromDatabase(boolean)}).
+   * <p>
+   * Entries loaded in the same session share their ArrowheadService instance, but the service metadata is stored per entry, so every entry gets
+   * its own copy of the service before its metadata is restored.
+   */
+  static void restoreMetadata(ServiceRegistryEntry entry) {
+    ArrowheadService service = entry.getProvidedService();
+    entry.setProvidedService(new ArrowheadService(service.getServiceDefinition(), new HashSet<>(service.getInterfaces()), new HashMap<>()));
+    entry.fromDatabase(true);
   }
 
-  static void filterOnInterfaces(List<ServiceRegistryEntry> fetchedList, ArrowheadService givenService) {
-    List<ServiceRegistryEntry> toBeRemoved = new ArrayList<>();
-    for (ServiceRegistryEntry entry : fetchedList) {
-      if (Collections.disjoint(entry.getProvidedService().getInterfaces(), givenService.getInterfaces())) {
-        toBeRemoved.add(entry);
+  /**
+   * Moves the metadata of the entries saved before the metadata table was introduced into the table, so they can be found by metadata searches.
+   */
+  static void migrateLegacyMetadata() {
+    // Written in batches while reading, so only one batch of migrated entries is kept in memory
+    List<ServiceRegistryEntry> batch = new ArrayList<>();
+    int[] migratedCount = {0};
+    dm.forEach(ServiceRegistryEntry.class, null, entry -> {
+      if (entry.migrateLegacyMetadata()) {
+        batch.add(entry);
+        if (batch.size() == MIGRATION_BATCH_SIZE) {
+          dm.mergeAll(batch);
+          migratedCount[0] += batch.size();
+          batch.clear();
+        }
       }
+    });
+    if (!batch.isEmpty()) {
+      dm.mergeAll(batch);
+      migratedCount[0] += batch.size();
     }
-    fetchedList.removeAll(toBeRemoved);
+    if (migratedCount[0] > 0) {
+      log.info("Metadata of " + migratedCount[0] + " Service Registry entries moved to the metadata table");
+    }
+  }
+
+  static void filterOnMeta(List<ServiceRegistryEntry> fetchedList, Map<String, String> metadata) {
+    fetchedList.removeIf(current -> !metadata.equals(current.getProvidedService().getServiceMetadata()));
   }
 
 }
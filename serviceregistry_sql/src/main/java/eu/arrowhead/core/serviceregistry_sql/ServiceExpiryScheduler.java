@@ -0,0 +1,157 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Removes the Service Registry entries whose <tt>endOfValidity</tt> timestamp has passed, using one scheduler thread.
+ * <p>
+ * Every <tt>ttl_interval</tt> minutes the end of validity of the entries expiring before the next load are put into a {@link DelayQueue}, and
+ * entries registered in the meantime are added when they are saved. When the first of the queued timestamps is reached, every expired entry is
+ * removed with one set-based <i>DELETE ... WHERE end_of_validity &lt; now</i> statement, so expiries close to each other are handled by one
+ * sweep.
+ */
+final class ServiceExpiryScheduler {
+
+  private static final Logger log = Logger.getLogger(ServiceExpiryScheduler.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  private static final DelayQueue<Expiry> expiries = new DelayQueue<>();
+  private static volatile Thread schedulerThread;
+  // The entries expiring before this time (epoch millis) are queued, the later ones are picked up by the next load
+  private static volatile long loadedUntil;
+
+  private ServiceExpiryScheduler() throws AssertionError {
+    throw new AssertionError("ServiceExpiryScheduler is a non-instantiable class");
+  }
+
+  /**
+   * Starts the scheduler thread. The already expired entries are removed right away.
+   */
+  static synchronized void start() {
+    if (schedulerThread != null) {
+      return;
+    }
+    schedulerThread = new Thread(ServiceExpiryScheduler::runScheduler, "sr-expiry-scheduler");
+    schedulerThread.setDaemon(true);
+    schedulerThread.start();
+  }
+
+  /**
+   * Queues the end of validity of a new or updated entry, if it expires before the next load. Does nothing if the scheduler is not running.
+   */
+  static void schedule(ServiceRegistryEntry entry) {
+    schedule(entry.getEndOfValidity());
+  }
+
+  /**
+   * Queues an end of validity timestamp (e.g. of renewed leases), if it is before the next load.
+   */
+  static void schedule(LocalDateTime endOfValidity) {
+    if (schedulerThread == null || endOfValidity == null) {
+      return;
+    }
+    Expiry expiry = new Expiry(endOfValidity);
+    if (expiry.expiresAt <= loadedUntil) {
+      expiries.add(expiry);
+    }
+  }
+
+  private static void runScheduler() {
+    long intervalMillis = TimeUnit.MINUTES.toMillis(ServiceRegistryMain.TTL_INTERVAL);
+    long nextLoad = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        long now = System.currentTimeMillis();
+        if (now >= nextLoad) {
+          nextLoad = now + intervalMillis;
+          loadUpcoming(nextLoad);
+        }
+
+        Expiry expiry = expiries.poll(nextLoad - now, TimeUnit.MILLISECONDS);
+        if (expiry != null) {
+          // Every expiry which is due is handled by the same sweep
+          expiries.drainTo(new ArrayList<>());
+          removeExpired();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        // The entries are queued again by the next load
+        log.error("Removing the expired Service Registry entries failed: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  private static void loadUpcoming(long until) {
+    removeExpired();
+
+    // Entries saved from now on are queued by schedule(), so none of them is missed by the load (duplicates do not matter)
+    expiries.clear();
+    loadedUntil = until;
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("until", LocalDateTime.ofInstant(Instant.ofEpochMilli(until), ZoneId.systemDefault()));
+    List<LocalDateTime> endOfValidities = dm.getAllByQuery(
+        "SELECT e.endOfValidity FROM ServiceRegistryEntry e WHERE e.endOfValidity < :until", LocalDateTime.class, parameters);
+    for (LocalDateTime endOfValidity : endOfValidities) {
+      expiries.add(new Expiry(endOfValidity));
+    }
+    log.debug(endOfValidities.size() + " Service Registry entries expire in the next " + ServiceRegistryMain.TTL_INTERVAL + " minutes");
+  }
+
+  private static void removeExpired() {
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("now", LocalDateTime.now());
+    // The affected services have to be known to update the query index
+    List<String> serviceDefinitions = dm.getAllByQuery(
+        "SELECT DISTINCT e.providedService.serviceDefinition FROM ServiceRegistryEntry e WHERE e.endOfValidity < :now", String.class, parameters);
+    if (serviceDefinitions.isEmpty()) {
+      return;
+    }
+
+    int deleteCount = dm.executeUpdate("DELETE FROM ServiceRegistryEntry e WHERE e.endOfValidity < :now", parameters);
+    for (String serviceDefinition : serviceDefinitions) {
+      ServiceRegistryIndex.refresh(serviceDefinition);
+    }
+    log.debug("Removed " + deleteCount + " expired entries from SR database at " + LocalDateTime.now());
+  }
+
+  private static class Expiry implements Delayed {
+
+    private final long expiresAt;
+
+    Expiry(LocalDateTime endOfValidity) {
+      // The sweep deletes the entries strictly before its start time, so it has to run (at least) 1 ms after the end of validity
+      this.expiresAt = endOfValidity.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + 1;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(expiresAt, ((Expiry) other).expiresAt);
+    }
+  }
+
+}
@@ -8,21 +8,18 @@
 package eu.arrowhead.core.serviceregistry_sql;
 
 import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.Utility;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.EventFilter;
 import eu.arrowhead.common.database.ServiceRegistryEntry;
-import eu.arrowhead.common.exception.BadPayloadException;
 import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.messages.ServiceQueryByRegex;
 import eu.arrowhead.common.messages.ServiceQueryResult;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -31,6 +28,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -62,8 +60,8 @@ public class ServiceRegistryApi {
 
   @GET
   @Path("all")
-  public Response getAllServices() {
-    List<ServiceRegistryEntry> providedServices = dm.getAll(ServiceRegistryEntry.class, null);
+  public Response getAllServices(@QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
+    List<ServiceRegistryEntry> providedServices = dm.getPage(ServiceRegistryEntry.class, null, afterId, limit);
 
     for (ServiceRegistryEntry entry : providedServices) {
       entry.fromDatabase(false);
@@ -74,7 +72,8 @@ public class ServiceRegistryApi {
     if (result.getServiceQueryData().isEmpty()) {
       return Response.status(Status.NO_CONTENT).entity(result).build();
     } else {
-      return Response.status(Response.Status.OK).entity(result).build();
+      Long nextAfterId = Utility.getNextAfterId(providedServices, DatabaseManager.getPageLimit(limit), ServiceRegistryEntry::getId);
+      return Response.status(Response.Status.OK).entity(result).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
     }
   }
 
@@ -86,9 +85,12 @@ public class ServiceRegistryApi {
       log.info("removeAllServices had no effect");
       return Response.status(Status.NO_CONTENT).build();
     }
+    Set<String> serviceDefinitions = new HashSet<>();
     for (ServiceRegistryEntry entry : providedServices) {
       dm.delete(entry);
+      serviceDefinitions.add(entry.getProvidedService().getServiceDefinition());
     }
+    serviceDefinitions.forEach(ServiceRegistryIndex::refresh);
     log.info("removeAllServices returns successfully");
     return Response.status(Status.OK).build();
   }
@@ -171,49 +173,11 @@ public class ServiceRegistryApi {
 
   @PUT
   @Path("query")
-  public List<ServiceRegistryEntry> queryByRegex(@Valid List<ServiceQueryByRegex> regexFilters) {
-    List<ServiceRegistryEntry> retrievedServices = dm.getAll(ServiceRegistryEntry.class, null);
-
-    for (ServiceQueryByRegex filter : regexFilters) {
-      Pattern pattern = Pattern.compile(filter.getRegularExpression(), Pattern.CASE_INSENSITIVE);
-      List<ServiceRegistryEntry> matches = new ArrayList<>();
-      for (ServiceRegistryEntry entry : retrievedServices) {
-        Matcher matcher = null;
-        switch (filter.getFieldName()) {
-          case systemName:
-            matcher = pattern.matcher(entry.getProvider().getSystemName());
-            break;
-          case serviceDefinition:
-            matcher = pattern.matcher(entry.getProvidedService().getServiceDefinition());
-            break;
-          case interfaces:
-            if (entry.getProvidedService().getInterfaces().stream()
-                     .anyMatch(filter.getRegularExpression()::equalsIgnoreCase)) {
-              matches.add(entry);
-            }
-            break;
-          default:
-            throw new BadPayloadException(
-                "SR entries can only be queried based on systemName, serviceDefinition and interfaces fields with "
-                    + "this method.");
-        }
-
-        if (matcher != null) {
-          if (filter.getPartialMatch()) {
-            if (matcher.find()) {
-              matches.add(entry);
-            }
-          } else {
-            if (matcher.matches()) {
-              matches.add(entry);
-            }
-          }
-        }
-      }
-
-      retrievedServices.retainAll(matches);
-    }
-    return retrievedServices;
+  public Response queryByRegex(@Valid List<ServiceQueryByRegex> regexFilters, @QueryParam("afterId") long afterId, @QueryParam("limit") int limit) {
+    List<ServiceRegistryEntry> retrievedServices = RegexQueryEngine.query(regexFilters, afterId, limit);
+    log.info("queryByRegex returns " + retrievedServices.size() + " entries");
+    Long nextAfterId = Utility.getNextAfterId(retrievedServices, RegexQueryEngine.getPageLimit(limit), ServiceRegistryEntry::getId);
+    return Response.ok().entity(retrievedServices).header(Utility.NEXT_AFTER_ID_HEADER, nextAfterId).build();
   }
 
   @PUT
@@ -222,8 +186,12 @@ public class ServiceRegistryApi {
     updatedEntry.toDatabase();
     ServiceRegistryEntry entry = dm.get(ServiceRegistryEntry.class, id).orElseThrow(
         () -> new DataNotFoundException("ServiceRegistryEntry not found with id: " + id));
+    String oldServiceDefinition = entry.getProvidedService().getServiceDefinition();
     entry.updateEntryWith(updatedEntry);
     entry = dm.merge(entry);
+    ServiceRegistryIndex.refresh(oldServiceDefinition);
+    ServiceRegistryIndex.refresh(entry.getProvidedService().getServiceDefinition());
+    ServiceExpiryScheduler.schedule(entry);
     log.info("updateServiceRegistryEntry successfully returns.");
     return Response.ok().entity(entry).build();
   }
@@ -243,6 +211,7 @@ public class ServiceRegistryApi {
   public Response deleteServiceRegistryEntry(@PathParam("entryId") long entryId) {
     return dm.get(ServiceRegistryEntry.class, entryId).map(entry -> {
       dm.delete(entry);
+      ServiceRegistryIndex.refresh(entry.getProvidedService().getServiceDefinition());
       log.info(entry.toString() + " deleted");
       return Response.ok().build();
     }).<DataNotFoundException>orElseThrow(() -> {
@@ -0,0 +1,154 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.exception.ArrowheadException;
+import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.messages.ServiceRegistryChange;
+import eu.arrowhead.common.messages.ServiceRegistryChanges;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory, bounded log of the Service Registry changes. Every change of the providers of a service definition gets the next revision number,
+ * so consumers (e.g. Orchestrators keeping a local copy of the registry) can ask for the changes since the last revision they have seen instead
+ * of polling the service queries, and wait (long-poll) for the next change.
+ * <p>
+ * The log keeps the last <tt>change_log_size</tt> changes. A consumer whose revision is older than the log (or which sees a new instance id after a
+ * restart) gets <i>410 Gone</i>, and has to query the services it is interested in again. Since the revisions start from 0 after every restart, the
+ * consumers have to send back the instance id of the answers together with their revision, otherwise a revision of the previous instance would
+ * be mistaken for one of the current instance.
+ */
+final class ServiceRegistryChangeLog {
+
+  private static final Logger log = Logger.getLogger(ServiceRegistryChangeLog.class.getName());
+  private static final String instanceId = UUID.randomUUID().toString();
+
+  private static final Deque<ServiceRegistryChange> changes = new ArrayDeque<>();
+  private static final List<Watch> watches = new ArrayList<>();
+  private static long revision;
+
+  private ServiceRegistryChangeLog() throws AssertionError {
+    throw new AssertionError("ServiceRegistryChangeLog is a non-instantiable class");
+  }
+
+  /**
+   * Appends a change of the given service definition to the log, and answers the waiting consumers interested in it.
+   */
+  static void record(String serviceDefinition) {
+    List<Watch> triggered = new ArrayList<>();
+    synchronized (ServiceRegistryChangeLog.class) {
+      changes.addLast(new ServiceRegistryChange(++revision, serviceDefinition, LocalDateTime.now()));
+      while (changes.size() > ServiceRegistryMain.CHANGE_LOG_SIZE) {
+        changes.removeFirst();
+      }
+
+      for (Iterator<Watch> it = watches.iterator(); it.hasNext(); ) {
+        Watch watch = it.next();
+        if (watch.serviceDefinition == null || watch.serviceDefinition.equals(serviceDefinition)) {
+          it.remove();
+          triggered.add(watch);
+        }
+      }
+    }
+
+    for (Watch watch : triggered) {
+      try {
+        watch.asyncResponse.resume(Response.ok().entity(getChanges(instanceId, watch.since, watch.serviceDefinition)).build());
+      } catch (ArrowheadException e) {
+        watch.asyncResponse.resume(e);
+      }
+    }
+  }
+
+  /**
+   * Returns the changes after the given revision, optionally only the ones of one service definition. The instance id the revision belongs to is
+   * mandatory for every revision except 0.
+   *
+   * @throws BadPayloadException if a revision is given without its instance id
+   * @throws ArrowheadException with 410 (Gone) status, if the revision belongs to another instance, or the changes after it are no longer in the
+   *     log
+   */
+  static synchronized ServiceRegistryChanges getChanges(String sinceInstanceId, long since, String serviceDefinition) {
+    if (since != 0 && sinceInstanceId == null) {
+      throw new BadPayloadException("The instanceId of the revision is mandatory when the since parameter is given.");
+    }
+    if (since != 0 && !sinceInstanceId.equals(instanceId)) {
+      throw new ArrowheadException("Revision " + since + " belongs to another Service Registry instance (" + sinceInstanceId + ", current: "
+                                       + instanceId + "), query the services again.", Status.GONE.getStatusCode());
+    }
+    long oldestRevision = changes.isEmpty() ? revision + 1 : changes.getFirst().getRevision();
+    if (since > revision || since < oldestRevision - 1) {
+      throw new ArrowheadException("The changes after revision " + since + " are not available (current revision: " + revision + ", instance: "
+                                       + instanceId + "), query the services again.", Status.GONE.getStatusCode());
+    }
+
+    List<ServiceRegistryChange> result = new ArrayList<>();
+    Iterator<ServiceRegistryChange> it = changes.descendingIterator();
+    while (it.hasNext()) {
+      ServiceRegistryChange change = it.next();
+      if (change.getRevision() <= since) {
+        break;
+      }
+      if (serviceDefinition == null || serviceDefinition.equals(change.getServiceDefinition())) {
+        result.add(0, change);
+      }
+    }
+    return new ServiceRegistryChanges(instanceId, revision, result);
+  }
+
+  /**
+   * Answers with the changes after the given revision. If there are none yet, waits for the next matching change for at most <tt>waitSeconds</tt>,
+   * and answers with an empty change list when the time is up.
+   */
+  static void watch(String sinceInstanceId, long since, String serviceDefinition, int waitSeconds, AsyncResponse asyncResponse) {
+    synchronized (ServiceRegistryChangeLog.class) {
+      ServiceRegistryChanges current = getChanges(sinceInstanceId, since, serviceDefinition);
+      if (!current.getChanges().isEmpty() || waitSeconds <= 0) {
+        asyncResponse.resume(Response.ok().entity(current).build());
+        return;
+      }
+
+      // The timeout has to be set while the response is surely suspended, before a change can resume it
+      Watch watch = new Watch(current.getRevision(), serviceDefinition, asyncResponse);
+      asyncResponse.setTimeoutHandler(response -> {
+        synchronized (ServiceRegistryChangeLog.class) {
+          watches.remove(watch);
+        }
+        response.resume(Response.ok().entity(new ServiceRegistryChanges(instanceId, watch.since, new ArrayList<>())).build());
+      });
+      asyncResponse.setTimeout(Math.min(waitSeconds, ServiceRegistryMain.WATCH_MAX_WAIT), TimeUnit.SECONDS);
+      watches.add(watch);
+    }
+    log.debug("Waiting for Service Registry changes after revision " + since + (serviceDefinition == null ? "" : " of " + serviceDefinition));
+  }
+
+  private static class Watch {
+
+    private final long since;
+    private final String serviceDefinition;
+    private final AsyncResponse asyncResponse;
+
+    Watch(long since, String serviceDefinition, AsyncResponse asyncResponse) {
+      this.since = since;
+      this.serviceDefinition = serviceDefinition;
+      this.asyncResponse = asyncResponse;
+    }
+  }
+
+}
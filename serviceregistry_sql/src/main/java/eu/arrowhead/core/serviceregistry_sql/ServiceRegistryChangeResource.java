@@ -0,0 +1,41 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Change feed of the Service Registry, see {@link ServiceRegistryChangeLog}.
+ * <p>
+ * <i>GET serviceregistry/changes?since=N</i> returns the changes after revision N right away, adding <i>wait=seconds</i> turns it into a long
+ * poll, which returns as soon as there is a change (or with an empty change list, when the time is up). The changes can be restricted to one
+ * service with the <i>serviceDefinition</i> parameter. Consumers start with <i>since=0</i>, and then continue with the revision and the
+ * <i>instanceId</i> of the previous answer (<i>since=N&amp;instanceId=X</i>). A revision of another instance (e.g. from before a restart) is
+ * answered with <i>410 Gone</i>.
+ */
+@Path("serviceregistry/changes")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ServiceRegistryChangeResource {
+
+  @GET
+  public void getChanges(@QueryParam("since") @DefaultValue("0") long since, @QueryParam("instanceId") String instanceId,
+                         @QueryParam("serviceDefinition") String serviceDefinition, @QueryParam("wait") @DefaultValue("0") int waitSeconds,
+                         @Suspended AsyncResponse asyncResponse) {
+    ServiceRegistryChangeLog.watch(instanceId, since, serviceDefinition, waitSeconds, asyncResponse);
+  }
+
+}
@@ -0,0 +1,266 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import eu.arrowhead.common.DatabaseManager;
+import eu.arrowhead.common.database.ArrowheadService;
+import eu.arrowhead.common.database.ArrowheadSystem;
+import eu.arrowhead.common.database.ServiceRegistryEntry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * In-memory copy of the Service Registry entries, so the service queries of the {@link ServiceRegistryResource} can be answered without querying
+ * the database. The entries are grouped by service definition, and every group is indexed by interface and by version.
+ * <p>
+ * A group is never modified after it was published, every write rebuilds the group of the affected service definition from the database (writes
+ * are rare compared to the queries), so concurrent queries always see a consistent group without locking. The whole index is loaded at startup and
+ * periodically reloaded, to pick up changes made directly in the database. Changes made through the common <i>mgmt/systems</i> and
+ * <i>mgmt/services</i> APIs reload it right away (see {@link ServiceRegistryIndexSyncFilter}).
+ * <p>
+ * The database compares service definitions and interfaces case insensitively (utf8_general_ci), so the index keys are normalized to lower case.
+ * <p>
+ * If the index is disabled in the config file, the queries are answered by {@link RegistryUtils#queryDatabase} instead.
+ */
+final class ServiceRegistryIndex {
+
+  private static final Logger log = Logger.getLogger(ServiceRegistryIndex.class.getName());
+  private static final DatabaseManager dm = DatabaseManager.getInstance();
+
+  private static volatile Map<String, ServiceEntries> services = new ConcurrentHashMap<>();
+  private static boolean loaded;
+
+  private ServiceRegistryIndex() throws AssertionError {
+    throw new AssertionError("ServiceRegistryIndex is a non-instantiable class");
+  }
+
+  /**
+   * (Re)builds the whole index from the database. The new index replaces the old one at once.
+   */
+  static void reload() {
+    if (!ServiceRegistryMain.USE_QUERY_INDEX) {
+      return;
+    }
+    // The changes made outside the Service Registry are only noticed here, they are added to the change log as well
+    loadAll().forEach(ServiceRegistryChangeLog::record);
+  }
+
+  /**
+   * Rebuilds the group of one service definition from the database, and records the change in the {@link ServiceRegistryChangeLog}. Has to be
+   * called after every write affecting the entries of the service.
+   */
+  static void refresh(String serviceDefinition) {
+    if (ServiceRegistryMain.USE_QUERY_INDEX) {
+      load(serviceDefinition);
+    }
+    // Recorded after the index is updated, so the consumers notified about the change already get the new entries from their queries
+    ServiceRegistryChangeLog.record(serviceDefinition);
+  }
+
+  /**
+   * Sets the new end of validity of renewed entries of a service, without reading them from the database again. Lease renewals are not recorded
+   * in the {@link ServiceRegistryChangeLog}, the end of validity is not compared on reload either.
+   */
+  static synchronized void renew(String serviceDefinition, Map<Long, LocalDateTime> endOfValidities) {
+    ServiceEntries serviceEntries = ServiceRegistryMain.USE_QUERY_INDEX ? services.get(normalize(serviceDefinition)) : null;
+    if (serviceEntries == null) {
+      return;
+    }
+
+    // The group is replaced with a new one, the published entries are not modified
+    List<ServiceRegistryEntry> entries = new ArrayList<>();
+    for (List<ServiceRegistryEntry> versionEntries : serviceEntries.byVersion.values()) {
+      for (ServiceRegistryEntry entry : versionEntries) {
+        LocalDateTime endOfValidity = endOfValidities.get(entry.getId());
+        if (endOfValidity != null) {
+          entry = copy(entry);
+          entry.setEndOfValidity(endOfValidity);
+        }
+        entries.add(entry);
+      }
+    }
+    services.put(normalize(serviceDefinition), new ServiceEntries(entries, false));
+  }
+
+  // Returns the service definitions whose entries are different from the ones in the previous index
+  private static synchronized Set<String> loadAll() {
+    Map<String, List<ServiceRegistryEntry>> grouped = new HashMap<>();
+    for (ServiceRegistryEntry entry : dm.getAll(ServiceRegistryEntry.class, null)) {
+      grouped.computeIfAbsent(normalize(entry.getProvidedService().getServiceDefinition()), k -> new ArrayList<>()).add(entry);
+    }
+
+    Map<String, ServiceEntries> newServices = new ConcurrentHashMap<>();
+    grouped.forEach((serviceDefinition, entries) -> newServices.put(serviceDefinition, new ServiceEntries(entries, true)));
+    Map<String, ServiceEntries> oldServices = services;
+    services = newServices;
+    log.info("Service Registry index loaded with " + newServices.size() + " services");
+
+    Set<String> changed = new HashSet<>();
+    if (loaded) {
+      Set<String> serviceDefinitions = new HashSet<>(oldServices.keySet());
+      serviceDefinitions.addAll(newServices.keySet());
+      for (String serviceDefinition : serviceDefinitions) {
+        ServiceEntries oldEntries = oldServices.get(serviceDefinition);
+        ServiceEntries newEntries = newServices.get(serviceDefinition);
+        if (oldEntries == null || newEntries == null || !oldEntries.signature.equals(newEntries.signature)) {
+          changed.add(serviceDefinition);
+        }
+      }
+    }
+    loaded = true;
+    return changed;
+  }
+
+  private static synchronized void load(String serviceDefinition) {
+    Map<String, Object> restrictionMap = new HashMap<>();
+    restrictionMap.put("serviceDefinition", serviceDefinition);
+    ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
+    List<ServiceRegistryEntry> entries = Collections.emptyList();
+    if (service != null) {
+      restrictionMap.clear();
+      restrictionMap.put("providedService", service);
+      entries = dm.getAll(ServiceRegistryEntry.class, restrictionMap);
+    }
+
+    if (entries.isEmpty()) {
+      services.remove(normalize(serviceDefinition));
+    } else {
+      services.put(normalize(serviceDefinition), new ServiceEntries(entries, true));
+    }
+  }
+
+  /**
+   * Returns true if there is at least one Service Registry entry with the given service definition.
+   */
+  static boolean contains(String serviceDefinition) {
+    return services.containsKey(normalize(serviceDefinition));
+  }
+
+  /**
+   * Returns the entries of a service which have at least one of the given interfaces, and whose version is between <tt>minVersion</tt> and
+   * <tt>maxVersion</tt> (both inclusive). The returned entries are copies, the caller is free to modify them.
+   */
+  static List<ServiceRegistryEntry> query(String serviceDefinition, Set<String> interfaces, int minVersion, int maxVersion) {
+    ServiceEntries serviceEntries = services.get(normalize(serviceDefinition));
+    if (serviceEntries == null || interfaces == null || interfaces.isEmpty() || minVersion > maxVersion) {
+      return new ArrayList<>();
+    }
+    Set<String> normalizedInterfaces = new HashSet<>();
+    for (String serviceInterface : interfaces) {
+      normalizedInterfaces.add(normalize(serviceInterface));
+    }
+
+    // The candidates come from the more selective index, the other condition is checked on each candidate
+    List<ServiceRegistryEntry> interfaceMatches = new ArrayList<>();
+    for (String serviceInterface : normalizedInterfaces) {
+      interfaceMatches.addAll(serviceEntries.byInterface.getOrDefault(serviceInterface, Collections.emptyList()));
+    }
+    List<ServiceRegistryEntry> versionMatches = new ArrayList<>();
+    for (List<ServiceRegistryEntry> entries : serviceEntries.byVersion.subMap(minVersion, true, maxVersion, true).values()) {
+      versionMatches.addAll(entries);
+    }
+
+    Set<ServiceRegistryEntry> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (interfaceMatches.size() <= versionMatches.size()) {
+      for (ServiceRegistryEntry entry : interfaceMatches) {
+        int version = getVersion(entry);
+        if (version >= minVersion && version <= maxVersion) {
+          result.add(entry);
+        }
+      }
+    } else {
+      for (ServiceRegistryEntry entry : versionMatches) {
+        for (String serviceInterface : entry.getProvidedService().getInterfaces()) {
+          if (normalizedInterfaces.contains(normalize(serviceInterface))) {
+            result.add(entry);
+            break;
+          }
+        }
+      }
+    }
+
+    // Every entry is only returned once (even if it matches multiple interfaces), in registration order
+    List<ServiceRegistryEntry> sorted = new ArrayList<>(result);
+    sorted.sort(Comparator.comparing(ServiceRegistryEntry::getId));
+    sorted.replaceAll(ServiceRegistryIndex::copy);
+    return sorted;
+  }
+
+  // The indexed entries are shared by the concurrent queries, so the results get their own copies (down to the interface and metadata collections)
+  private static ServiceRegistryEntry copy(ServiceRegistryEntry entry) {
+    ArrowheadService service = entry.getProvidedService();
+    ArrowheadService serviceCopy = new ArrowheadService(service.getServiceDefinition(), new HashSet<>(service.getInterfaces()),
+                                                        new HashMap<>(service.getServiceMetadata()));
+    serviceCopy.setId(service.getId());
+    ArrowheadSystem providerCopy = new ArrowheadSystem(entry.getProvider());
+    providerCopy.setId(entry.getProvider().getId());
+
+    ServiceRegistryEntry entryCopy = new ServiceRegistryEntry(serviceCopy, providerCopy, entry.getServiceURI(), entry.isUdp(),
+                                                              entry.getEndOfValidity(), entry.getVersion(), new HashMap<>());
+    entryCopy.setId(entry.getId());
+    return entryCopy;
+  }
+
+  private static String normalize(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  private static int getVersion(ServiceRegistryEntry entry) {
+    return entry.getVersion() == null ? 1 : entry.getVersion();
+  }
+
+  /**
+   * Immutable, indexed group of the entries belonging to one service definition.
+   */
+  private static class ServiceEntries {
+
+    private final Map<String, List<ServiceRegistryEntry>> byInterface = new HashMap<>();
+    private final NavigableMap<Integer, List<ServiceRegistryEntry>> byVersion = new TreeMap<>();
+    // The fields of the entries which are visible in the query results, to detect changes on reload
+    private final List<List<Object>> signature = new ArrayList<>();
+
+    // The metadata of the entries coming from the database has to be restored, the entries taken from another group already have it
+    ServiceEntries(Collection<ServiceRegistryEntry> entries, boolean fromDatabase) {
+      List<ServiceRegistryEntry> sorted = new ArrayList<>();
+      for (ServiceRegistryEntry entry : entries) {
+        if (fromDatabase) {
+          RegistryUtils.restoreMetadata(entry);
+        }
+        sorted.add(entry);
+      }
+      sorted.sort(Comparator.comparing(ServiceRegistryEntry::getId));
+
+      for (ServiceRegistryEntry entry : sorted) {
+        for (String serviceInterface : entry.getProvidedService().getInterfaces()) {
+          byInterface.computeIfAbsent(normalize(serviceInterface), k -> new ArrayList<>()).add(entry);
+        }
+        byVersion.computeIfAbsent(getVersion(entry), k -> new ArrayList<>()).add(entry);
+        signature.add(Arrays.asList(entry.getId(), entry.getProvider(), entry.getServiceURI(), entry.isUdp(), getVersion(entry),
+                                    new TreeSet<>(entry.getProvidedService().getInterfaces()),
+                                    new TreeMap<>(entry.getProvidedService().getServiceMetadata())));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * This work is part of the Productive 4.0 innovation project, which receives grants from the
+ * European Commissions H2020 research and innovation programme, ECSEL Joint Undertaking
+ * (project no. 737459), the free state of Saxony, the German Federal Ministry of Education and
+ * national funding authorities from involved countries.
+ */
+
+package eu.arrowhead.core.serviceregistry_sql;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Response.Status.Family;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Reloads the {@link ServiceRegistryIndex} after a successful change through the common <i>mgmt/systems</i> and <i>mgmt/services</i> APIs.
+ * The indexed entries contain copies of the provider systems and the provided services, and deleting one of them removes its Service Registry
+ * entries by cascade, so these changes have to reach the index before the response is sent.
+ */
+@Provider
+public class ServiceRegistryIndexSyncFilter implements ContainerResponseFilter {
+
+  private static final List<String> ENTITY_PATHS = Arrays.asList("mgmt/systems", "mgmt/services");
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    if (request.getMethod().equals(HttpMethod.GET) || request.getMethod().equals(HttpMethod.OPTIONS)
+        || response.getStatusInfo().getFamily() != Family.SUCCESSFUL) {
+      return;
+    }
+    String path = request.getUriInfo().getPath();
+    for (String entityPath : ENTITY_PATHS) {
+      if (path.startsWith(entityPath) || path.startsWith("/" + entityPath)) {
+        ServiceRegistryIndex.reload();
+        return;
+      }
+    }
+  }
+
+}
@@ -9,6 +9,7 @@ package eu.arrowhead.core.serviceregistry_sql;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.ServiceConfigurationError;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -17,21 +18,50 @@ import eu.arrowhead.common.ArrowheadMain;
 import eu.arrowhead.common.misc.CoreSystem;
 import eu.arrowhead.common.web.ArrowheadServiceApi;
 import eu.arrowhead.common.web.ArrowheadSystemApi;
+import org.apache.log4j.Logger;
 
 public class ServiceRegistryMain extends ArrowheadMain {
 
+  private static final Logger log = Logger.getLogger(ServiceRegistryMain.class.getName());
+
   static int PING_TIMEOUT;
+  static int PING_MAX_CONCURRENT;
+  static int LIVENESS_TTL;
   static int TTL_INTERVAL;
+  static int LEASE_DURATION;
+  static int LEASE_BATCH_SIZE;
+  static int LEASE_RENEWAL_TIMEOUT;
+  static int BULK_MAX_ENTRIES;
+  static int CHANGE_LOG_SIZE;
+  static int WATCH_MAX_WAIT;
+  static int QUERY_PAGE_SIZE;
+  static int REGEX_CACHE_SIZE;
+  static boolean USE_QUERY_INDEX;
+  private static int INDEX_RELOAD_INTERVAL;
 
   {
     PING_TIMEOUT = props.getIntProperty("ping_timeout", 7500);
+    PING_MAX_CONCURRENT = props.getIntProperty("ping_max_concurrent", 64);
+    LIVENESS_TTL = props.getIntProperty("liveness_ttl", 60);
     TTL_INTERVAL = props.getIntProperty("ttl_interval", 10);
+    LEASE_DURATION = props.getIntProperty("lease_duration", 90);
+    LEASE_BATCH_SIZE = props.getIntProperty("lease_batch_size", 1000);
+    LEASE_RENEWAL_TIMEOUT = props.getIntProperty("lease_renewal_timeout", 5000);
+    BULK_MAX_ENTRIES = props.getIntProperty("bulk_max_entries", 1000);
+    CHANGE_LOG_SIZE = props.getIntProperty("change_log_size", 10000);
+    WATCH_MAX_WAIT = props.getIntProperty("watch_max_wait", 120);
+    QUERY_PAGE_SIZE = props.getIntProperty("query_page_size", 1000);
+    REGEX_CACHE_SIZE = props.getIntProperty("regex_cache_size", 256);
+    USE_QUERY_INDEX = props.getBooleanProperty("sr_query_index", true);
+    INDEX_RELOAD_INTERVAL = props.getIntProperty("sr_index_reload_interval", 10);
   }
 
   private ServiceRegistryMain(String[] args) {
     Set<Class<?>> classes = new HashSet<>(Arrays.asList(ArrowheadSystemApi.class, ArrowheadServiceApi.class));
     String[] packages = {"eu.arrowhead.common.exception", "eu.arrowhead.common.json", "eu.arrowhead.common.filter",
         "eu.arrowhead.core.serviceregistry_sql"};
+    RegistryUtils.migrateLegacyMetadata();
+    ServiceRegistryIndex.reload();
     init(CoreSystem.SERVICE_REGISTRY_SQL, args, classes, packages);
     for (String s: args) {
         if (s.equals("-opcua")) {
@@ -47,11 +77,28 @@ public class ServiceRegistryMain extends ArrowheadMain {
       int interval = props.getIntProperty("ping_interval", 60);
       pingTimer.schedule(pingTask, 60L * 1000L, (interval * 60L * 1000L));
     }
-    //if TTL based service removing is scheduled, start the TimerTask that provides it
+    //if TTL based service removing is scheduled, start the scheduler thread that provides it
     if (props.getBooleanProperty("ttl_scheduled", false)) {
-      TimerTask removeTask = new RemoveExpiredServicesTask();
-      Timer ttlTimer = new Timer();
-      ttlTimer.schedule(removeTask, 45L * 1000L, TTL_INTERVAL * 60L * 1000L);
+      if (TTL_INTERVAL <= 0) {
+        throw new ServiceConfigurationError("ttl_interval has to be a positive number of minutes! Please fix it in the properties file.");
+      }
+      ServiceExpiryScheduler.start();
+    }
+    //the query index is periodically rebuilt, to pick up the changes which were not made through the Service Registry
+    if (USE_QUERY_INDEX && INDEX_RELOAD_INTERVAL > 0) {
+      TimerTask reloadTask = new TimerTask() {
+        @Override
+        public void run() {
+          // An exception would cancel the Timer, and the index would never be reloaded again
+          try {
+            ServiceRegistryIndex.reload();
+          } catch (RuntimeException e) {
+            log.error("Reloading the Service Registry index failed: " + e.getMessage(), e);
+          }
+        }
+      };
+      Timer reloadTimer = new Timer(true);
+      reloadTimer.schedule(reloadTask, INDEX_RELOAD_INTERVAL * 60L * 1000L, INDEX_RELOAD_INTERVAL * 60L * 1000L);
     }
 
     listenForInput();
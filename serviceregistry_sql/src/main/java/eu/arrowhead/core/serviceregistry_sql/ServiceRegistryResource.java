@@ -11,18 +11,28 @@ import eu.arrowhead.common.DatabaseManager;
 import eu.arrowhead.common.database.ArrowheadService;
 import eu.arrowhead.common.database.ArrowheadSystem;
 import eu.arrowhead.common.database.ServiceRegistryEntry;
+import eu.arrowhead.common.exception.BadPayloadException;
+import eu.arrowhead.common.exception.DataNotFoundException;
 import eu.arrowhead.common.exception.DuplicateEntryException;
+import eu.arrowhead.common.messages.ServiceLease;
 import eu.arrowhead.common.messages.ServiceQueryForm;
 import eu.arrowhead.common.messages.ServiceQueryResult;
+import eu.arrowhead.common.misc.SecurityUtils;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -35,7 +45,6 @@ public class ServiceRegistryResource {
 
     static final DatabaseManager dm = DatabaseManager.getInstance();
 
-    private final HashMap<String, Object> restrictionMap = new HashMap<>();
     private static final Logger log = Logger.getLogger(ServiceRegistryResource.class.getName());
 
     @GET
@@ -62,9 +71,54 @@ public class ServiceRegistryResource {
         return removeGeneric(entry);
     }
 
+    /**
+     * Registers a list of services in one transaction. The answer contains the result of each entry, in the order of the request.
+     */
+    @POST
+    @Path("register/bulk")
+    public Response registerServices(@Valid List<ServiceRegistryEntry> entries) {
+        return Response.status(Status.OK).entity(RegistryBulkOperations.register(entries)).build();
+    }
+
+    /**
+     * Removes a list of services in one transaction. The answer contains the result of each entry, in the order of the request.
+     */
+    @PUT
+    @Path("remove/bulk")
+    public Response removeServices(@Valid List<ServiceRegistryEntry> entries) {
+        return Response.status(Status.OK).entity(RegistryBulkOperations.remove(entries)).build();
+    }
+
+    /**
+     * Extends the end of validity of a Service Registry entry to <tt>leaseDuration</tt> seconds from now (or to the configured default lease
+     * duration), without registering it again. Meant to be called periodically by the providers (heartbeat). In secure mode only the provider of
+     * the entry can renew its lease.
+     */
+    @PUT
+    @Path("renew/{id}")
+    public Response renewLease(@PathParam("id") long id, @QueryParam("leaseDuration") Integer leaseDuration,
+                               @Context ContainerRequestContext requestContext) {
+        int duration = leaseDuration != null ? leaseDuration : ServiceRegistryMain.LEASE_DURATION;
+        if (duration <= 0) {
+            throw new BadPayloadException("Lease duration must be a positive number of seconds.");
+        }
+
+        String clientSystemName = null;
+        if (requestContext.getSecurityContext().isSecure()) {
+            String clientCN = SecurityUtils.getCertCNFromSubject(requestContext.getSecurityContext().getUserPrincipal().getName());
+            clientSystemName = clientCN.split("\\.", 2)[0];
+        }
+        LocalDateTime endOfValidity = LeaseRenewals.renew(id, duration, clientSystemName);
+        if (endOfValidity == null) {
+            throw new DataNotFoundException("ServiceRegistryEntry not found with id: " + id);
+        }
+        log.debug("Lease of ServiceRegistryEntry " + id + " renewed until " + endOfValidity);
+        return Response.ok().entity(new ServiceLease(id, endOfValidity)).build();
+    }
+
     public Response registerGeneric(ServiceRegistryEntry entry) {
         entry.toDatabase();
-        restrictionMap.clear();
+        Map<String, Object> restrictionMap = new HashMap<>();
         restrictionMap.put("serviceDefinition", entry.getProvidedService().getServiceDefinition());
         ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
         if (service == null) {
@@ -99,48 +153,61 @@ public class ServiceRegistryResource {
                     + provider.getSystemName() + ") and " + "providedService(" + service.getServiceDefinition() + ")");
         }
 
+        // The interfaces are stored on the service, so all of its entries have to be refreshed in the index
+        ServiceRegistryIndex.refresh(service.getServiceDefinition());
+        ServiceExpiryScheduler.schedule(savedEntry);
         savedEntry.fromDatabase(true);
         log.info("New " + entry.toString() + " is saved.");
         return Response.status(Status.CREATED).entity(savedEntry).build();
     }
 
     public Response queryGeneric(ServiceQueryForm queryForm) {
-        restrictionMap.put("serviceDefinition", queryForm.getService().getServiceDefinition());
-        ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
-        if (service == null) {
-            log.info("Service " + queryForm.getService().toString() + " is not in the registry.");
-            return Response.status(Status.PARTIAL_CONTENT).entity(new ServiceQueryResult()).build();
-        }
-
-        restrictionMap.clear();
-        restrictionMap.put("providedService", service);
-        List<ServiceRegistryEntry> providedServices = dm.getAll(ServiceRegistryEntry.class, restrictionMap);
-        for (ServiceRegistryEntry entry : providedServices) {
-            entry.fromDatabase(true);
-        }
-
-        log.debug("Potential service providers before filtering:" + providedServices.size());
-        RegistryUtils.filterOnInterfaces(providedServices, queryForm.getService());
+        String serviceDefinition = queryForm.getService().getServiceDefinition();
+        int minVersion;
+        int maxVersion;
         if (queryForm.getVersion() != null) {
-            RegistryUtils.filterOnVersion(providedServices, queryForm.getVersion());
+            minVersion = queryForm.getVersion();
+            maxVersion = queryForm.getVersion();
         } else {
             String minVersionValue = queryForm.getService().getServiceMetadata().get("minVersion");
-            int minVersion = minVersionValue != null ? Integer.valueOf(minVersionValue) : 0;
+            minVersion = minVersionValue != null ? Integer.valueOf(minVersionValue) : 0;
 
             String maxVersionValue = queryForm.getService().getServiceMetadata().get("maxVersion");
-            int maxVersion = maxVersionValue != null ? Integer.valueOf(maxVersionValue) : Integer.MAX_VALUE;
-
-            if (minVersion > 0 || maxVersion < Integer.MAX_VALUE) {
-                RegistryUtils.filterOnVersion(providedServices, minVersion, maxVersion);
-            }
+            maxVersion = maxVersionValue != null ? Integer.valueOf(maxVersionValue) : Integer.MAX_VALUE;
         }
+        Map<String, String> metadata = null;
         if (queryForm.isMetadataSearch()) {
             queryForm.getService().getServiceMetadata().remove("minVersion");
             queryForm.getService().getServiceMetadata().remove("maxVersion");
-            RegistryUtils.filterOnMeta(providedServices, queryForm.getService().getServiceMetadata());
+            metadata = queryForm.getService().getServiceMetadata();
         }
+
+        List<ServiceRegistryEntry> providedServices;
+        if (ServiceRegistryMain.USE_QUERY_INDEX) {
+            // The interface and version filters are answered by the in-memory index
+            providedServices = ServiceRegistryIndex.query(serviceDefinition, queryForm.getService().getInterfaces(), minVersion, maxVersion);
+            if (metadata != null) {
+                RegistryUtils.filterOnMeta(providedServices, metadata);
+            }
+        } else {
+            // The interface, version and metadata filters are compiled into one database query
+            providedServices = RegistryUtils
+                    .queryDatabase(serviceDefinition, queryForm.getService().getInterfaces(), minVersion, maxVersion, metadata);
+        }
+        log.debug("Potential service providers after the interface, version and metadata filtering:" + providedServices.size());
+
+        if (providedServices.isEmpty() && !ServiceRegistryIndex.contains(serviceDefinition)) {
+            // Only the database can tell whether the service itself is known
+            Map<String, Object> restrictionMap = new HashMap<>();
+            restrictionMap.put("serviceDefinition", serviceDefinition);
+            if (dm.get(ArrowheadService.class, restrictionMap) == null) {
+                log.info("Service " + queryForm.getService().toString() + " is not in the registry.");
+                return Response.status(Status.PARTIAL_CONTENT).entity(new ServiceQueryResult()).build();
+            }
+        }
+
         if (queryForm.isPingProviders()) {
-            RegistryUtils.filterOnPing(providedServices);
+            LivenessProber.filterOnPing(providedServices);
         }
         log.debug("Potential service providers after filtering:" + providedServices.size());
 
@@ -150,7 +217,7 @@ public class ServiceRegistryResource {
     }
 
     public Response removeGeneric(ServiceRegistryEntry entry) {
-        restrictionMap.clear();
+        Map<String, Object> restrictionMap = new HashMap<>();
         restrictionMap.put("serviceDefinition", entry.getProvidedService().getServiceDefinition());
         ArrowheadService service = dm.get(ArrowheadService.class, restrictionMap);
 
@@ -166,6 +233,7 @@ public class ServiceRegistryResource {
         ServiceRegistryEntry retrievedEntry = dm.get(ServiceRegistryEntry.class, restrictionMap);
         if (retrievedEntry != null) {
             dm.delete(retrievedEntry);
+            ServiceRegistryIndex.refresh(service.getServiceDefinition());
             retrievedEntry.fromDatabase(true);
             log.info(retrievedEntry.toString() + " deleted.");
             return Response.status(Status.OK).entity(retrievedEntry).build();
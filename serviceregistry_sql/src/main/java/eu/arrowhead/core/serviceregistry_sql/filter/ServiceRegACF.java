@@ -12,6 +12,7 @@ import eu.arrowhead.common.database.ServiceRegistryEntry;
 import eu.arrowhead.common.exception.AuthException;
 import eu.arrowhead.common.filter.AccessControlFilter;
 import eu.arrowhead.common.misc.SecurityUtils;
+import java.net.URI;
 import javax.annotation.Priority;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.core.Response.Status;
@@ -29,6 +30,8 @@ public class ServiceRegACF extends AccessControlFilter {
     }
 
     String serverCN = (String) configuration.getProperty("server_common_name");
+    // The request target contains the query parameters too
+    String requestPath = URI.create(requestTarget).getPath();
     String[] serverFields = serverCN.split("\\.", 2);
 
     if (requestTarget.contains("mgmt")) {
@@ -39,17 +42,29 @@ public class ServiceRegACF extends AccessControlFilter {
       // All requests from the local cloud are allowed
       ServiceRegistryEntry entry = Utility.fromJson(requestJson, ServiceRegistryEntry.class);
       String[] clientFields = clientCN.split("\\.", 2);
+      checkProviderName(entry.getProvider().getSystemName(), clientCN);
 
-      String providerName = entry.getProvider().getSystemName();
-      if (!providerName.equalsIgnoreCase(clientFields[0]) && !providerName.replaceAll("_", "").equalsIgnoreCase(clientFields[0])) {
-        // BUT a provider system can only register/remove its own services!
-        log.error("Provider system name and cert common name do not match! SR registering/removing denied!");
-        throw new AuthException("Provider system " + entry.getProvider().getSystemName() + " and cert common name (" + clientCN + ") do not match!",
-                                Status.UNAUTHORIZED.getStatusCode());
+      return serverFields[1].equalsIgnoreCase(clientFields[1]);
+    } else if (requestTarget.endsWith("register/bulk") || requestTarget.endsWith("remove/bulk")) {
+      // Same as above, for every entry of the list
+      String[] clientFields = clientCN.split("\\.", 2);
+      for (ServiceRegistryEntry entry : Utility.fromJson(requestJson, ServiceRegistryEntry[].class)) {
+        checkProviderName(entry.getProvider().getSystemName(), clientCN);
       }
 
       return serverFields[1].equalsIgnoreCase(clientFields[1]);
-    } else if (requestTarget.endsWith("query")) {
+    } else if (requestPath.contains("/renew/")) {
+      // A provider system can only renew the lease of its own services, this is checked by the batched lease renewal (LeaseRenewals), so the
+      // heartbeats do not need a query each here
+      String[] clientFields = clientCN.split("\\.", 2);
+      try {
+        Long.parseLong(requestPath.substring(requestPath.lastIndexOf('/') + 1));
+      } catch (NumberFormatException e) {
+        return false;
+      }
+
+      return serverFields[1].equalsIgnoreCase(clientFields[1]);
+    } else if (requestTarget.endsWith("query") || requestPath.endsWith("changes")) {
       String[] allowedCoreSystems = {"orchestrator", "gatekeeper", "certificateauthority", "certificate_authority"};
       for (String coreSystem : allowedCoreSystems) {
         if (clientCN.equalsIgnoreCase(coreSystem + "." + serverFields[1])) {
@@ -61,4 +76,14 @@ public class ServiceRegACF extends AccessControlFilter {
     return false;
   }
 
+  private void checkProviderName(String providerName, String clientCN) {
+    String[] clientFields = clientCN.split("\\.", 2);
+    if (!providerName.equalsIgnoreCase(clientFields[0]) && !providerName.replaceAll("_", "").equalsIgnoreCase(clientFields[0])) {
+      // BUT a provider system can only register/remove its own services!
+      log.error("Provider system name and cert common name do not match! SR registering/removing denied!");
+      throw new AuthException("Provider system " + providerName + " and cert common name (" + clientCN + ") do not match!",
+                              Status.UNAUTHORIZED.getStatusCode());
+    }
+  }
+
 }